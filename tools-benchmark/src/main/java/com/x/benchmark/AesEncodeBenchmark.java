@@ -0,0 +1,46 @@
+package com.x.benchmark;
+
+import com.x.utils.encrypt.AesEncodeUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AesEncodeUtil加解密耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AesEncodeBenchmark {
+
+	@Param({"64", "4096"})
+	private int length;
+
+	private String plain;
+
+	private String encrypted;
+
+	@Setup
+	public void setup() {
+		plain = StringUtils.repeat("明文a1", length / 3);
+		encrypted = AesEncodeUtil.encrypt(plain);
+	}
+
+	@Benchmark
+	public String encrypt() {
+		return AesEncodeUtil.encrypt(plain);
+	}
+
+	@Benchmark
+	public String decrypt() {
+		return AesEncodeUtil.decrypt(encrypted);
+	}
+}
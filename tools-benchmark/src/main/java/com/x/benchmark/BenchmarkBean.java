@@ -0,0 +1,75 @@
+package com.x.benchmark;
+
+import com.x.utils.excel.annotation.ExcelField;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试使用的数据对象
+ */
+public class BenchmarkBean {
+
+	@ExcelField(title = "ID", sort = 1)
+	private Long id;
+
+	@ExcelField(title = "名称", sort = 2)
+	private String name;
+
+	@ExcelField(title = "金额", sort = 3)
+	private Double amount;
+
+	@ExcelField(title = "创建时间", sort = 4, dataFormat = "yyyy-MM-dd HH:mm:ss")
+	private Date createTime;
+
+	/**
+	 * 生成固定种子的随机数据
+	 */
+	public static List<BenchmarkBean> randomList(int size) {
+		Random random = new Random(42);
+		List<BenchmarkBean> list = new ArrayList<BenchmarkBean>(size);
+		for (int i = 0; i < size; i++) {
+			BenchmarkBean bean = new BenchmarkBean();
+			bean.setId((long) i);
+			bean.setName("name-" + random.nextInt(size));
+			bean.setAmount(random.nextDouble() * 10000);
+			bean.setCreateTime(new Date(1500000000000L + random.nextInt(Integer.MAX_VALUE)));
+			list.add(bean);
+		}
+		return list;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Double getAmount() {
+		return amount;
+	}
+
+	public void setAmount(Double amount) {
+		this.amount = amount;
+	}
+
+	public Date getCreateTime() {
+		return createTime;
+	}
+
+	public void setCreateTime(Date createTime) {
+		this.createTime = createTime;
+	}
+}
@@ -0,0 +1,43 @@
+package com.x.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 基准测试入口
+ * <p>
+ * 使用固定的fork、预热和测量参数运行，结果写入JSON文件，便于对比不同版本：
+ * java -jar benchmarks.jar [过滤正则] [结果目录]
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+		File resultDir = new File(args.length > 1 ? args[1] : "jmh-results");
+		if (!resultDir.exists() && !resultDir.mkdirs()) {
+			throw new IllegalStateException("can't create result directory: " + resultDir);
+		}
+		String resultFile = new File(resultDir, new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) + ".json").getPath();
+
+		Options options = new OptionsBuilder()
+				.include(include)
+				.forks(1)
+				.warmupIterations(5)
+				.warmupTime(TimeValue.seconds(1))
+				.measurementIterations(10)
+				.measurementTime(TimeValue.seconds(1))
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFile)
+				.build();
+		new Runner(options).run();
+		System.out.println("benchmark result: " + resultFile);
+	}
+}
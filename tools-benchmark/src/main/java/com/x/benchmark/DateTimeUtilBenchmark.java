@@ -0,0 +1,40 @@
+package com.x.benchmark;
+
+import com.x.utils.DateTimeUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DateTimeUtil日期格式化与解析耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class DateTimeUtilBenchmark {
+
+	private final Date date = new Date(1539849600000L);
+
+	private final String text = "2018-10-18 16:00:00";
+
+	@Benchmark
+	public String date2Str() {
+		return DateTimeUtil.date2Str(date, DateTimeUtil.DAYTIME_PARTTEN);
+	}
+
+	@Benchmark
+	public Date str2Date() {
+		return DateTimeUtil.str2Date(text, DateTimeUtil.DAYTIME_PARTTEN);
+	}
+
+	@Benchmark
+	public String getCurMillionSecondsTime() {
+		return DateTimeUtil.getCurMillionSecondsTime();
+	}
+}
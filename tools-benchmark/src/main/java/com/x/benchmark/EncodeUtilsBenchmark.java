@@ -0,0 +1,35 @@
+package com.x.benchmark;
+
+import com.x.utils.codec.EncodeUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EncodeUtils.xssFilter对普通文本和含脚本文本的过滤耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class EncodeUtilsBenchmark {
+
+	private final String plain = "订单备注：请在工作日送达，联系电话13800000000";
+
+	private final String script = "<div onclick=\"alert(1)\">备注<script type=\"text/javascript\">alert('x')</script>"
+			+ "<a href=\"javascript:alert(2)\">link</a></div>";
+
+	@Benchmark
+	public String xssFilterPlain() {
+		return EncodeUtils.xssFilter(plain);
+	}
+
+	@Benchmark
+	public String xssFilterScript() {
+		return EncodeUtils.xssFilter(script);
+	}
+}
@@ -0,0 +1,43 @@
+package com.x.benchmark;
+
+import com.x.utils.excel.ExcelExport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ExcelExport.setDataList按注解写入数据行的耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ExcelExportBenchmark {
+
+	@Param({"1000", "10000"})
+	private int rows;
+
+	private List<BenchmarkBean> list;
+
+	@Setup
+	public void setup() {
+		list = BenchmarkBean.randomList(rows);
+	}
+
+	@Benchmark
+	public ExcelExport setDataList() {
+		ExcelExport export = new ExcelExport("benchmark", BenchmarkBean.class);
+		try {
+			return export.setDataList(list);
+		} finally {
+			export.dispose();
+		}
+	}
+}
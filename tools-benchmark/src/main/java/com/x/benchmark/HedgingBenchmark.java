@@ -0,0 +1,73 @@
+package com.x.benchmark;
+
+import com.x.http.HttpClientConfig;
+import com.x.http.LocalHttpClient;
+import com.x.http.resilience.HedgingHttpClient;
+import com.x.http.resilience.HedgingPolicy;
+import org.apache.http.client.methods.HttpGet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对冲请求对尾部延迟的影响：本地桩服务99%的请求10ms返回，1%的请求200ms返回(p99约为p50的20倍)
+ * <p>
+ * 按SampleTime输出p50/p99等分位，对比不对冲和按p95对冲的结果
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+public class HedgingBenchmark {
+
+	private static final long FAST_MILLIS = 10;
+
+	private static final long SLOW_MILLIS = 200;
+
+	private StubServer server;
+
+	private LocalHttpClient plainClient;
+
+	private LocalHttpClient hedgingClient;
+
+	private HedgingHttpClient hedging;
+
+	private String url;
+
+	@Setup
+	public void setup() throws IOException {
+		server = new StubServer().setLatencyMillis(FAST_MILLIS).setSlow(0.01, SLOW_MILLIS).start();
+		url = server.getUrl();
+		plainClient = LocalHttpClient.create(new HttpClientConfig());
+		hedgingClient = LocalHttpClient.create(new HttpClientConfig());
+		hedging = hedgingClient.enableHedging(new HedgingPolicy());
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.out.println();
+		System.out.println(hedging);
+		plainClient.close();
+		hedgingClient.close();
+		server.stop();
+	}
+
+	@Benchmark
+	public String plain() {
+		return plainClient.exe(new HttpGet(url));
+	}
+
+	@Benchmark
+	public String hedged() {
+		return hedgingClient.exe(new HttpGet(url));
+	}
+}
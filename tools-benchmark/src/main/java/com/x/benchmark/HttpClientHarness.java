@@ -0,0 +1,192 @@
+package com.x.benchmark;
+
+import com.x.http.HttpClientConfig;
+import com.x.http.HttpClientFactory;
+import com.x.http.HttpPoolStats;
+import com.x.http.InstrumentedConnectionManager;
+import com.x.http.LocalHttpClient;
+import com.x.http.metrics.LatencyHistogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用本地桩服务压测http客户端：固定并发(每个线程收到响应后立即发下一个请求)，输出吞吐量、p50/p99/p999延迟和新建连接数
+ * <p>
+ * 参数用系统属性指定，例如关闭Keep-Alive对比连接复用：
+ * java -Dconcurrency=32 -DkeepAlive=false -cp benchmarks.jar com.x.benchmark.HttpClientHarness
+ * <ul>
+ * <li>client：local(LocalHttpClient.create)或factory(HttpClientFactory创建的CloseableHttpClient)，默认local</li>
+ * <li>concurrency：并发数，默认16</li>
+ * <li>warmupSeconds / seconds：预热和测量时间，默认5 / 10</li>
+ * <li>latencyMillis、slowRate、slowMillis：桩服务的延迟和慢请求比例，默认1、0、0</li>
+ * <li>payloadBytes：响应大小，默认1024</li>
+ * <li>errorRate、errorStatus：返回错误状态的比例和状态码，默认0、503</li>
+ * <li>keepAlive：桩服务是否保持连接，默认true</li>
+ * <li>maxTotal、maxPerRoute、maxIdleMillis、socketTimeoutMillis：客户端配置，默认与HttpClientConfig相同</li>
+ * </ul>
+ */
+public class HttpClientHarness {
+
+	private final String clientType = System.getProperty("client", "local");
+
+	private final int concurrency = Integer.getInteger("concurrency", 16);
+
+	private final long warmupSeconds = Long.getLong("warmupSeconds", 5);
+
+	private final long seconds = Long.getLong("seconds", 10);
+
+	private final StubServer server = new StubServer()
+			.setLatencyMillis(Long.getLong("latencyMillis", 1))
+			.setSlow(Double.parseDouble(System.getProperty("slowRate", "0")), Long.getLong("slowMillis", 0))
+			.setPayloadBytes(Integer.getInteger("payloadBytes", 1024))
+			.setError(Double.parseDouble(System.getProperty("errorRate", "0")), Integer.getInteger("errorStatus", 503))
+			.setKeepAlive(Boolean.parseBoolean(System.getProperty("keepAlive", "true")));
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<Integer, LongAdder>();
+
+	private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+
+	private volatile boolean measuring;
+
+	private volatile boolean stopped;
+
+	private LocalHttpClient localClient;
+
+	private CloseableHttpClient factoryClient;
+
+	private InstrumentedConnectionManager connectionManager;
+
+	public static void main(String[] args) throws Exception {
+		new HttpClientHarness().run();
+	}
+
+	private void run() throws Exception {
+		server.start();
+		HttpClientConfig config = config();
+		if ("factory".equals(clientType)) {
+			connectionManager = HttpClientFactory.createConnectionManager(config);
+			factoryClient = HttpClientFactory.createHttpClient(connectionManager, config);
+		} else if ("local".equals(clientType)) {
+			localClient = LocalHttpClient.create(config);
+		} else {
+			throw new IllegalArgumentException("unknown client: " + clientType);
+		}
+		try {
+			Thread[] threads = new Thread[concurrency];
+			for (int i = 0; i < concurrency; i++) {
+				threads[i] = new Thread(new Runnable() {
+					public void run() {
+						loop();
+					}
+				}, "harness-" + i);
+				threads[i].start();
+			}
+			Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+			long connectsBefore = poolStats().getConnects();
+			long start = System.nanoTime();
+			measuring = true;
+			Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+			measuring = false;
+			long elapsedNanos = System.nanoTime() - start;
+			long connects = poolStats().getConnects() - connectsBefore;
+			stopped = true;
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			report(elapsedNanos, connects);
+		} finally {
+			if (localClient != null) {
+				localClient.close();
+			} else {
+				factoryClient.close();
+			}
+			server.stop();
+		}
+	}
+
+	private HttpClientConfig config() {
+		HttpClientConfig config = new HttpClientConfig();
+		config.setMaxTotal(Integer.getInteger("maxTotal", config.getMaxTotal()));
+		config.setMaxPerRoute(Integer.getInteger("maxPerRoute", config.getMaxPerRoute()));
+		config.setMaxIdleMillis(Long.getLong("maxIdleMillis", config.getMaxIdleMillis()));
+		config.setSocketTimeoutMillis(Integer.getInteger("socketTimeoutMillis", config.getSocketTimeoutMillis()));
+		return config;
+	}
+
+	private void loop() {
+		HttpGet request = new HttpGet(server.getUrl());
+		ResponseHandler<Integer> handler = new ResponseHandler<Integer>() {
+			public Integer handleResponse(HttpResponse response) throws IOException {
+				EntityUtils.consume(response.getEntity());
+				return response.getStatusLine().getStatusCode();
+			}
+		};
+		while (!stopped) {
+			long start = System.nanoTime();
+			try {
+				int status = localClient != null ? localClient.execute(request, handler) : factoryClient.execute(request, handler);
+				if (measuring) {
+					latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+					increment(statusCounts, status);
+				}
+			} catch (Exception e) {
+				if (measuring) {
+					increment(errors, e.getClass().getSimpleName());
+				}
+			}
+		}
+	}
+
+	private static <K> void increment(ConcurrentMap<K, LongAdder> counts, K key) {
+		LongAdder count = counts.get(key);
+		if (count == null) {
+			LongAdder created = new LongAdder();
+			count = counts.putIfAbsent(key, created);
+			if (count == null) {
+				count = created;
+			}
+		}
+		count.increment();
+	}
+
+	private HttpPoolStats poolStats() {
+		return localClient != null ? localClient.getTotalPoolStats() : connectionManager.getTotalPoolStats();
+	}
+
+	private void report(long elapsedNanos, long connects) {
+		LatencyHistogram.Snapshot snapshot = latency.snapshot();
+		long requests = snapshot.getCount();
+		double elapsedSeconds = elapsedNanos / 1e9;
+		System.out.println("client=" + clientType + ", concurrency=" + concurrency + ", keepAlive=" + server.isKeepAlive()
+				+ ", latencyMillis=" + server.getLatencyMillis() + ", payloadBytes=" + server.getPayloadBytes()
+				+ ", errorRate=" + server.getErrorRate());
+		System.out.println(String.format("requests=%d, throughput=%.1f req/s, status=%s, errors=%s",
+				requests, requests / elapsedSeconds, sorted(statusCounts), sorted(errors)));
+		System.out.println("latency(us): p50=" + snapshot.getPercentile(0.5) + ", p99=" + snapshot.getPercentile(0.99)
+				+ ", p999=" + snapshot.getPercentile(0.999) + ", max=" + snapshot.getMax());
+		System.out.println(String.format("connections opened=%d, per 1000 requests=%.2f",
+				connects, requests == 0 ? 0 : connects * 1000.0 / requests));
+		System.out.println("pool: " + poolStats());
+	}
+
+	private static <K> Map<K, Long> sorted(Map<K, LongAdder> counts) {
+		Map<K, Long> sorted = new TreeMap<K, Long>();
+		for (Map.Entry<K, LongAdder> entry : counts.entrySet()) {
+			sorted.put(entry.getKey(), entry.getValue().sum());
+		}
+		return sorted;
+	}
+}
@@ -0,0 +1,83 @@
+package com.x.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.x.http.JsonResponseHandler;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 5MB JSON响应的解析耗时和内存分配：读成字符串后解析 vs 从响应流直接解析
+ * <p>
+ * 内存分配需加上gc分析器运行：java -jar benchmarks.jar JsonResponseHandler -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class JsonResponseHandlerBenchmark {
+
+	private static final int PAYLOAD_BYTES = 5 * 1024 * 1024;
+
+	private final ResponseHandler<Payload> stringHandler = JsonResponseHandler.createResponseHandler(Payload.class);
+
+	private final ResponseHandler<Payload> streamingHandler = JsonResponseHandler.createStreamingResponseHandler(Payload.class);
+
+	private byte[] body;
+
+	@Setup
+	public void setup() {
+		int size = 1000;
+		String json;
+		do {
+			Payload payload = new Payload();
+			payload.setItems(BenchmarkBean.randomList(size));
+			json = JSON.toJSONString(payload);
+			size = (int) (size * (double) PAYLOAD_BYTES / json.length()) + 1;
+		} while (json.length() < PAYLOAD_BYTES);
+		body = json.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public Payload toStringThenParse() throws IOException {
+		return stringHandler.handleResponse(response());
+	}
+
+	@Benchmark
+	public Payload streaming() throws IOException {
+		return streamingHandler.handleResponse(response());
+	}
+
+	private HttpResponse response() {
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		response.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+		return response;
+	}
+
+	public static class Payload {
+
+		private List<BenchmarkBean> items;
+
+		public List<BenchmarkBean> getItems() {
+			return items;
+		}
+
+		public void setItems(List<BenchmarkBean> items) {
+			this.items = items;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.x.benchmark;
+
+import com.x.utils.collect.ListUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ListUtils.listOrderBy按属性排序的耗时，每次排序一份未排序的副本
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ListUtilsBenchmark {
+
+	@Param({"100", "10000"})
+	private int size;
+
+	private List<BenchmarkBean> list;
+
+	@Setup
+	public void setup() {
+		list = BenchmarkBean.randomList(size);
+	}
+
+	@Benchmark
+	public List<BenchmarkBean> listOrderBy() {
+		return ListUtils.listOrderBy(new ArrayList<BenchmarkBean>(list), "name desc");
+	}
+}
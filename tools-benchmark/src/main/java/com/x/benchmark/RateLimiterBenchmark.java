@@ -0,0 +1,131 @@
+package com.x.benchmark;
+
+import com.x.http.resilience.RateLimitPolicy;
+import com.x.http.resilience.RateLimitingHttpClient;
+import com.x.http.resilience.TokenBucket;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不触发限制时限流的开销：令牌桶、舱壁信号量，以及经过RateLimitingHttpClient与直接调用桩客户端的对比
+ * <p>
+ * 桩客户端不发网络请求，直接返回固定的响应，结果只包含客户端本身的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class RateLimiterBenchmark {
+
+	private static final byte[] BODY = "ok".getBytes();
+
+	private TokenBucket bucket;
+
+	private Semaphore bulkhead;
+
+	private CloseableHttpClient plainClient;
+
+	private CloseableHttpClient limitedClient;
+
+	private HttpGet request;
+
+	@Setup
+	public void setup() {
+		bucket = new TokenBucket(1e9, 1000);
+		bulkhead = new Semaphore(1000);
+		plainClient = new StubHttpClient();
+		RateLimitPolicy policy = new RateLimitPolicy();
+		policy.setPermitsPerSecond(1e9);
+		policy.setBurst(1000);
+		policy.setMaxConcurrent(1000);
+		limitedClient = new RateLimitingHttpClient(new StubHttpClient(), policy);
+		request = new HttpGet("http://127.0.0.1:8080/orders");
+	}
+
+	@Benchmark
+	public boolean tokenBucket() {
+		return bucket.tryAcquire();
+	}
+
+	@Benchmark
+	public boolean bulkhead() {
+		boolean acquired = bulkhead.tryAcquire();
+		bulkhead.release();
+		return acquired;
+	}
+
+	@Benchmark
+	public int plainExecute() throws IOException {
+		return execute(plainClient);
+	}
+
+	@Benchmark
+	public int limitedExecute() throws IOException {
+		return execute(limitedClient);
+	}
+
+	private int execute(CloseableHttpClient client) throws IOException {
+		CloseableHttpResponse response = client.execute(request);
+		try {
+			return EntityUtils.toByteArray(response.getEntity()).length;
+		} finally {
+			response.close();
+		}
+	}
+
+	private static class StubHttpClient extends CloseableHttpClient {
+
+		@Override
+		protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) {
+			StubHttpResponse response = new StubHttpResponse();
+			response.setEntity(new ByteArrayEntity(BODY));
+			return response;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Deprecated
+		@Override
+		public HttpParams getParams() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Deprecated
+		@Override
+		public ClientConnectionManager getConnectionManager() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static class StubHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+		StubHttpResponse() {
+			super(HttpVersion.HTTP_1_1, 200, "OK");
+		}
+
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package com.x.benchmark;
+
+import com.x.utils.reflect.ReflectUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReflectUtils.invokeGetter与直接调用getter的耗时对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ReflectUtilsBenchmark {
+
+	private final BenchmarkBean bean = BenchmarkBean.randomList(1).get(0);
+
+	@Benchmark
+	public Object invokeGetter() {
+		return ReflectUtils.invokeGetter(bean, "name");
+	}
+
+	@Benchmark
+	public Object directGetter() {
+		return bean.getName();
+	}
+}
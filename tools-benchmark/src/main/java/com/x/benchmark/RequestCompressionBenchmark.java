@@ -0,0 +1,83 @@
+package com.x.benchmark;
+
+import com.alibaba.fastjson.JSON;
+import com.x.http.compress.CompressingEntity;
+import com.x.http.compress.DeflaterPool;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * 请求内容gzip压缩：池化Deflater与httpclient自带的GzipCompressingEntity(每次新建Deflater)对比
+ * <p>
+ * 返回值为压缩后的字节数；内存分配需加上gc分析器：java -jar benchmarks.jar RequestCompression -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RequestCompressionBenchmark {
+
+	/**
+	 * 请求中的订单数，约每条60字节
+	 */
+	@Param({ "50", "5000" })
+	private int orders;
+
+	private final DeflaterPool pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, true, 16);
+
+	private byte[] body;
+
+	@Setup
+	public void setup() {
+		body = JSON.toJSONString(BenchmarkBean.randomList(orders)).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.clear();
+	}
+
+	@Benchmark
+	public long pooledDeflater() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		new CompressingEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON), pool).writeTo(out);
+		return out.count;
+	}
+
+	@Benchmark
+	public long newDeflater() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		new GzipCompressingEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON)).writeTo(out);
+		return out.count;
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
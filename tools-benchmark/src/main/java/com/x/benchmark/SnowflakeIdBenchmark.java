@@ -0,0 +1,54 @@
+package com.x.benchmark;
+
+import com.x.SnowflakeId.SnowflakeIdWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SnowflakeIdWorker生成ID的吞吐量，按线程数观察竞争下的扩展性
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SnowflakeIdBenchmark {
+
+	@Benchmark
+	public String nextId() {
+		return SnowflakeIdWorker.nextId();
+	}
+
+	@Benchmark
+	public long nextLongId() {
+		return SnowflakeIdWorker.nextLongId();
+	}
+
+	@Benchmark
+	public long[] nextIds1000() {
+		return SnowflakeIdWorker.nextIds(1000);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long nextLongIdThreads4() {
+		return SnowflakeIdWorker.nextLongId();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public long nextLongIdThreads16() {
+		return SnowflakeIdWorker.nextLongId();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public long nextLongIdThreads64() {
+		return SnowflakeIdWorker.nextLongId();
+	}
+}
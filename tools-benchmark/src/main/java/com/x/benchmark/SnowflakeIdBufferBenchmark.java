@@ -0,0 +1,47 @@
+package com.x.benchmark;
+
+import com.x.SnowflakeId.SnowflakeIdWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 开启预生成缓冲区后SnowflakeIdWorker取ID的吞吐量
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SnowflakeIdBufferBenchmark {
+
+	@Setup(Level.Trial)
+	public void enableBuffer() {
+		SnowflakeIdWorker.enableBuffer(1 << 16, 1 << 14);
+	}
+
+	@TearDown(Level.Trial)
+	public void disableBuffer() {
+		System.out.println("buffer refills: " + SnowflakeIdWorker.getBuffer().getRefillCount()
+				+ ", stalls: " + SnowflakeIdWorker.getBuffer().getStallCount());
+		SnowflakeIdWorker.disableBuffer();
+	}
+
+	@Benchmark
+	public long nextLongId() {
+		return SnowflakeIdWorker.nextLongId();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public long nextLongIdThreads16() {
+		return SnowflakeIdWorker.nextLongId();
+	}
+}
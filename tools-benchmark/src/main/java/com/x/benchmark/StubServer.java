@@ -0,0 +1,201 @@
+package com.x.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地回环地址上的桩服务，用于http客户端的基准测试
+ * <p>
+ * 可配置响应延迟(含慢请求比例)、响应大小、错误状态比例和是否保持连接；
+ * 关闭Keep-Alive时每个响应带Connection: close，服务端在响应后关闭连接，客户端每次请求都要新建连接
+ */
+public class StubServer {
+
+	/**
+	 * 响应延迟(毫秒)
+	 */
+	private long latencyMillis;
+
+	/**
+	 * 慢请求的比例，0~1
+	 */
+	private double slowRate;
+
+	/**
+	 * 慢请求的延迟(毫秒)
+	 */
+	private long slowMillis;
+
+	/**
+	 * 响应内容的字节数
+	 */
+	private int payloadBytes = 2;
+
+	/**
+	 * 返回错误状态的比例，0~1
+	 */
+	private double errorRate;
+
+	/**
+	 * 错误时返回的状态码
+	 */
+	private int errorStatus = 503;
+
+	private boolean keepAlive = true;
+
+	private final LongAdder requests = new LongAdder();
+
+	private HttpServer server;
+
+	private ExecutorService executor;
+
+	private byte[] payload;
+
+	public StubServer start() throws IOException {
+		// 关闭Nagle，避免与客户端的延迟确认叠加出40ms的额外延迟
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		payload = new byte[payloadBytes];
+		Arrays.fill(payload, (byte) 'x');
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				handleExchange(exchange);
+			}
+		});
+		server.start();
+		return this;
+	}
+
+	private void handleExchange(HttpExchange exchange) throws IOException {
+		requests.increment();
+		try {
+			drain(exchange.getRequestBody());
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			long delay = slowRate > 0 && random.nextDouble() < slowRate ? slowMillis : latencyMillis;
+			if (delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			if (!keepAlive) {
+				exchange.getResponseHeaders().set("Connection", "close");
+			}
+			exchange.getResponseHeaders().set("Content-Type", "text/plain");
+			int status = errorRate > 0 && random.nextDouble() < errorRate ? errorStatus : 200;
+			exchange.sendResponseHeaders(status, payload.length == 0 ? -1 : payload.length);
+			if (payload.length > 0) {
+				OutputStream out = exchange.getResponseBody();
+				out.write(payload);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[8192];
+		while (in.read(buffer) != -1) {
+		}
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return 如http://127.0.0.1:端口/
+	 */
+	public String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	/**
+	 * @return 启动以来收到的请求数
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	public StubServer setLatencyMillis(long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+		return this;
+	}
+
+	public double getSlowRate() {
+		return slowRate;
+	}
+
+	public long getSlowMillis() {
+		return slowMillis;
+	}
+
+	/**
+	 * @param slowRate   慢请求的比例，0~1
+	 * @param slowMillis 慢请求的延迟(毫秒)
+	 * @return
+	 */
+	public StubServer setSlow(double slowRate, long slowMillis) {
+		this.slowRate = slowRate;
+		this.slowMillis = slowMillis;
+		return this;
+	}
+
+	public int getPayloadBytes() {
+		return payloadBytes;
+	}
+
+	public StubServer setPayloadBytes(int payloadBytes) {
+		this.payloadBytes = payloadBytes;
+		return this;
+	}
+
+	public double getErrorRate() {
+		return errorRate;
+	}
+
+	public int getErrorStatus() {
+		return errorStatus;
+	}
+
+	/**
+	 * @param errorRate   返回错误状态的比例，0~1
+	 * @param errorStatus 如500、503
+	 * @return
+	 */
+	public StubServer setError(double errorRate, int errorStatus) {
+		this.errorRate = errorRate;
+		this.errorStatus = errorStatus;
+		return this;
+	}
+
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
+	public StubServer setKeepAlive(boolean keepAlive) {
+		this.keepAlive = keepAlive;
+		return this;
+	}
+}
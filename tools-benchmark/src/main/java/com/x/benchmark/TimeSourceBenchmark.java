@@ -0,0 +1,35 @@
+package com.x.benchmark;
+
+import com.x.utils.lang.CachedTimeSource;
+import com.x.utils.lang.TimeSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 系统时钟与缓存时钟读取当前时间的开销对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TimeSourceBenchmark {
+
+	private final TimeSource system = TimeSource.SYSTEM;
+
+	private final TimeSource cached = CachedTimeSource.getInstance();
+
+	@Benchmark
+	public long system() {
+		return system.currentTimeMillis();
+	}
+
+	@Benchmark
+	public long cached() {
+		return cached.currentTimeMillis();
+	}
+}
@@ -0,0 +1,181 @@
+package com.x.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import com.x.http.HttpClientConfig;
+import com.x.http.HttpClientFactory;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLContexts;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次新建连接池并发出一个https请求：每个连接池新建SSLContext(原来的做法)与共享SSLContext对比
+ * <p>
+ * 结果为建立连接加一次请求的时间；结束时输出完整握手和恢复会话的次数。
+ * 桩服务的自签名证书在启动时用JDK的keytool生成
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TlsHandshakeBenchmark {
+
+	private static final String PASSWORD = "changeit";
+
+	@Param({ "TLSv1.2", "TLSv1.3" })
+	private String protocol;
+
+	private File keystore;
+
+	private HttpsServer server;
+
+	private String url;
+
+	private long fullHandshakes;
+
+	private long resumedSessions;
+
+	@Setup
+	public void setup() throws Exception {
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		keystore = File.createTempFile("tls-benchmark", ".p12");
+		keystore.delete();
+		Process keytool = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool",
+				"-genkeypair", "-alias", "stub", "-keyalg", "EC", "-dname", "CN=localhost", "-validity", "2",
+				"-storetype", "PKCS12", "-keystore", keystore.getPath(), "-storepass", PASSWORD, "-keypass", PASSWORD)
+				.inheritIO().start();
+		if (keytool.waitFor() != 0) {
+			throw new IllegalStateException("keytool failed");
+		}
+		final SSLContext serverContext = serverContext();
+		server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setHttpsConfigurator(new HttpsConfigurator(serverContext) {
+			@Override
+			public void configure(HttpsParameters params) {
+				SSLParameters parameters = serverContext.getDefaultSSLParameters();
+				parameters.setProtocols(new String[] { protocol });
+				params.setSSLParameters(parameters);
+			}
+		});
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = "ok".getBytes();
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				exchange.close();
+			}
+		});
+		server.start();
+		url = "https://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	private SSLContext serverContext() throws GeneralSecurityException, IOException {
+		KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		InputStream in = new FileInputStream(keystore);
+		try {
+			keyStore.load(in, PASSWORD.toCharArray());
+		} finally {
+			in.close();
+		}
+		KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		kmf.init(keyStore, PASSWORD.toCharArray());
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(kmf.getKeyManagers(), null, null);
+		return context;
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.out.println();
+		System.out.println("full handshakes=" + fullHandshakes + ", resumed sessions=" + resumedSessions);
+		server.stop(0);
+		keystore.delete();
+	}
+
+	/**
+	 * 原来的做法：每个连接池新建信任任何证书的SSLContext
+	 */
+	@Benchmark
+	public int freshContext() throws Exception {
+		TrustStrategy anyTrustStrategy = new TrustStrategy() {
+			public boolean isTrusted(X509Certificate[] x509Certificates, String s) {
+				return true;
+			}
+		};
+		SSLContext sslContext = SSLContexts.custom().loadTrustMaterial(null, anyTrustStrategy).build();
+		Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE))
+				.build();
+		return request(HttpClientFactory.createHttpClient(new PoolingHttpClientConnectionManager(registry), new HttpClientConfig()));
+	}
+
+	/**
+	 * 共享SSLContext，新的连接池恢复已缓存的会话
+	 */
+	@Benchmark
+	public int sharedContext() throws Exception {
+		return request(HttpClientFactory.createHttpClient(new HttpClientConfig()));
+	}
+
+	private int request(CloseableHttpClient client) throws IOException {
+		try {
+			HttpClientContext context = HttpClientContext.create();
+			long start = System.currentTimeMillis();
+			CloseableHttpResponse response = client.execute(new HttpGet(url), context);
+			try {
+				SSLSession session = context.getConnection(ManagedHttpClientConnection.class).getSSLSession();
+				// 恢复的会话保留第一次握手时的创建时间
+				if (session.getCreationTime() < start) {
+					resumedSessions++;
+				} else {
+					fullHandshakes++;
+				}
+				return EntityUtils.toByteArray(response.getEntity()).length;
+			} finally {
+				response.close();
+			}
+		} finally {
+			client.close();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.x.SegmentId;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 基于数据库表的号段存储，兼容MySQL和H2<br>
+ * 表结构见{@link #CREATE_TABLE_SQL}；分配号段时在一个事务内先更新max_id再读取，
+ * 行锁保证多个实例分配到的号段互不重叠。
+ */
+public class JdbcSegmentStore implements SegmentStore {
+
+    /** 号段表建表语句 */
+    public static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS id_segment ("
+            + "biz_key VARCHAR(128) NOT NULL, "
+            + "max_id BIGINT NOT NULL, "
+            + "update_time TIMESTAMP NOT NULL, "
+            + "PRIMARY KEY (biz_key))";
+
+    private static final String UPDATE_SQL = "UPDATE id_segment SET max_id = max_id + ?, update_time = CURRENT_TIMESTAMP WHERE biz_key = ?";
+
+    private static final String INSERT_SQL = "INSERT INTO id_segment (biz_key, max_id, update_time) VALUES (?, ?, CURRENT_TIMESTAMP)";
+
+    private static final String SELECT_SQL = "SELECT max_id FROM id_segment WHERE biz_key = ?";
+
+    private final DataSource dataSource;
+
+    /** 第一个号段的起始ID */
+    private final long initialId;
+
+    public JdbcSegmentStore(DataSource dataSource) {
+        this(dataSource, 1L);
+    }
+
+    /**
+     * @param dataSource 数据源
+     * @param initialId 业务键首次分配时第一个号段的起始ID
+     */
+    public JdbcSegmentStore(DataSource dataSource, long initialId) {
+        this.dataSource = dataSource;
+        this.initialId = initialId;
+    }
+
+    /**
+     * 号段表不存在时创建
+     */
+    public void createTable() {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE_SQL);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public long allocate(String key, int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("step must be greater than 0: " + step);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                long maxId = allocate(connection, key, step);
+                connection.commit();
+                return maxId - step;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return 分配后的max_id，号段为[max_id - step, max_id)
+     */
+    private long allocate(Connection connection, String key, int step) throws SQLException {
+        if (update(connection, key, step) == 0) {
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+                insert.setString(1, key);
+                insert.setLong(2, initialId + step);
+                insert.executeUpdate();
+                return initialId + step;
+            } catch (SQLException e) {
+                //并发插入时主键冲突，改为更新
+                if (update(connection, key, step) == 0) {
+                    throw e;
+                }
+            }
+        }
+        try (PreparedStatement select = connection.prepareStatement(SELECT_SQL)) {
+            select.setString(1, key);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalStateException("segment row disappeared: " + key);
+                }
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private int update(Connection connection, String key, int step) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_SQL)) {
+            update.setLong(1, step);
+            update.setString(2, key);
+            return update.executeUpdate();
+        }
+    }
+}
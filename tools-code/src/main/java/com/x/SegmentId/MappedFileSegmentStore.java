@@ -0,0 +1,134 @@
+package com.x.SegmentId;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * 基于内存映射文件的号段存储<br>
+ * 每个业务键一个文件(key.segment)，前8字节保存下一个可分配的ID；
+ * 分配时持有文件锁，同一主机上的多个JVM可以共享同一目录。
+ * 文件锁属于整个JVM，同一JVM内使用同一目录的多个实例按文件路径串行分配。
+ */
+public class MappedFileSegmentStore implements SegmentStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[A-Za-z0-9_\\-.]+");
+
+    private final Path directory;
+
+    /** 第一个号段的起始ID */
+    private final long initialId;
+
+    /** 同一JVM内按文件路径串行：文件锁不能在同一JVM内重复获取，关闭通道还可能释放该文件上的所有锁 */
+    private static final ConcurrentMap<Path, Object> PATH_LOCKS = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Slot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory 存储目录，不存在时创建
+     */
+    public MappedFileSegmentStore(Path directory) {
+        this(directory, 1L);
+    }
+
+    /**
+     * @param directory 存储目录，不存在时创建
+     * @param initialId 第一个号段的起始ID
+     */
+    public MappedFileSegmentStore(Path directory, long initialId) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.directory = directory;
+        this.initialId = initialId;
+    }
+
+    @Override
+    public long allocate(String key, int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("step must be greater than 0: " + step);
+        }
+        Slot slot = slot(key);
+        synchronized (slot.pathLock) {
+            try {
+                FileLock lock = slot.channel.lock();
+                try {
+                    long start = slot.buffer.getLong(0);
+                    if (start == 0) {
+                        start = initialId;
+                    }
+                    slot.buffer.putLong(0, start + step);
+                    slot.buffer.force();
+                    return start;
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private Slot slot(String key) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+                throw new IllegalArgumentException("segment key can only contain letters, digits, '_', '-' and '.': " + key);
+            }
+            synchronized (slots) {
+                slot = slots.get(key);
+                if (slot == null) {
+                    slot = new Slot(directory.resolve(key + ".segment"));
+                    slots.put(key, slot);
+                }
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * 关闭所有映射文件
+     */
+    public void close() {
+        synchronized (slots) {
+            for (Slot slot : slots.values()) {
+                synchronized (slot.pathLock) {
+                    try {
+                        slot.channel.close();
+                    } catch (IOException e) {
+                        //忽略关闭异常
+                    }
+                }
+            }
+            slots.clear();
+        }
+    }
+
+    private static class Slot {
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        private final Object pathLock;
+
+        Slot(Path file) {
+            this.pathLock = PATH_LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(), k -> new Object());
+            try {
+                this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
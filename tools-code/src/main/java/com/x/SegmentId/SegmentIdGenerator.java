@@ -0,0 +1,193 @@
+package com.x.SegmentId;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 号段模式ID生成器(双缓冲)<br>
+ * 每次从{@link SegmentStore}取一段连续ID(默认10000个)在内存中发放，
+ * 当前号段剩余不足10%时由后台线程异步预取下一号段，号段用完时直接切换，请求线程通常不会等待存储。<br>
+ * 生成的ID连续、单调递增，适合需要稠密ID的表；进程重启会丢弃未发放完的号段。
+ */
+public class SegmentIdGenerator {
+    private static Logger log = LoggerFactory.getLogger(SegmentIdGenerator.class);
+
+    /** 默认号段大小 */
+    public static final int DEFAULT_STEP = 10000;
+
+    /** 剩余比例低于该值时预取下一号段 */
+    private static final double PREFETCH_RATIO = 0.1;
+
+    private final SegmentStore store;
+
+    private final String key;
+
+    private final int step;
+
+    /** 剩余ID数不高于该值时预取 */
+    private final long prefetchThreshold;
+
+    private final ExecutorService prefetchExecutor;
+
+    private volatile Segment current;
+
+    /** 预取中的下一号段 */
+    private Future<Segment> next;
+
+    /** 当前号段是否已触发预取 */
+    private final AtomicBoolean prefetching = new AtomicBoolean();
+
+    /** 从存储加载的号段数 */
+    private final AtomicLong segmentCount = new AtomicLong();
+
+    /** 号段用完时预取尚未完成、请求线程等待的次数 */
+    private final AtomicLong waitCount = new AtomicLong();
+
+    public SegmentIdGenerator(SegmentStore store, String key) {
+        this(store, key, DEFAULT_STEP);
+    }
+
+    /**
+     * 创建生成器并同步加载第一个号段
+     * @param store 号段存储
+     * @param key 业务键，如表名
+     * @param step 号段大小
+     */
+    public SegmentIdGenerator(SegmentStore store, String key, int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("step must be greater than 0: " + step);
+        }
+        this.store = store;
+        this.key = key;
+        this.step = step;
+        this.prefetchThreshold = Math.max(1L, (long) (step * PREFETCH_RATIO));
+        this.prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "segment-id-prefetch-" + SegmentIdGenerator.this.key);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.current = load();
+    }
+
+    /**
+     * 获得下一个ID (该方法是线程安全的)
+     * @return 连续递增的ID
+     */
+    public long nextId() {
+        for (;;) {
+            Segment segment = current;
+            long id = segment.cursor.getAndIncrement();
+            if (id < segment.end) {
+                if (segment.end - id <= prefetchThreshold && prefetching.compareAndSet(false, true)) {
+                    prefetch();
+                }
+                return id;
+            }
+            switchSegment(segment);
+        }
+    }
+
+    private synchronized void prefetch() {
+        if (next != null) {
+            return;
+        }
+        next = prefetchExecutor.submit(new Callable<Segment>() {
+            public Segment call() {
+                return load();
+            }
+        });
+    }
+
+    /**
+     * 当前号段用完，切换到预取的号段；预取未完成时等待，预取失败时同步加载
+     */
+    private synchronized void switchSegment(Segment exhausted) {
+        if (current != exhausted) {
+            //其他线程已经切换
+            return;
+        }
+        Segment segment = null;
+        if (next != null) {
+            if (!next.isDone()) {
+                waitCount.incrementAndGet();
+            }
+            try {
+                segment = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                log.warn("prefetch segment of " + key + " failed, loading synchronously", e.getCause());
+            }
+        } else {
+            waitCount.incrementAndGet();
+        }
+        if (segment == null) {
+            segment = load();
+        }
+        next = null;
+        prefetching.set(false);
+        current = segment;
+    }
+
+    private Segment load() {
+        long start = store.allocate(key, step);
+        segmentCount.incrementAndGet();
+        return new Segment(start, start + step);
+    }
+
+    /**
+     * @return 当前号段剩余的ID数
+     */
+    public long getRemaining() {
+        Segment segment = current;
+        return Math.max(0L, segment.end - segment.cursor.get());
+    }
+
+    /**
+     * @return 从存储加载的号段数
+     */
+    public long getSegmentCount() {
+        return segmentCount.get();
+    }
+
+    /**
+     * @return 请求线程等待号段的次数
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * 停止预取线程
+     */
+    public void close() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    /**
+     * 号段[start, end)，cursor为下一个待发放的ID
+     */
+    private static class Segment {
+
+        private final AtomicLong cursor;
+
+        private final long end;
+
+        Segment(long start, long end) {
+            this.cursor = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
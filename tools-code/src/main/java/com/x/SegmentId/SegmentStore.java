@@ -0,0 +1,15 @@
+package com.x.SegmentId;
+
+/**
+ * 号段存储，负责持久化每个业务键已分配到的最大ID
+ */
+public interface SegmentStore {
+
+    /**
+     * 原子地为业务键分配一个新号段，多个进程并发调用时分配到的号段互不重叠
+     * @param key 业务键，如表名
+     * @param step 号段大小
+     * @return 号段的第一个ID，号段为[返回值, 返回值 + step)
+     */
+    long allocate(String key, int step);
+}
@@ -0,0 +1,22 @@
+package com.x.SnowflakeId;
+
+/**
+ * 时钟回退(如NTP校时)时的ID生成策略
+ */
+public enum ClockBackwardsStrategy {
+
+    /** 直接抛出异常，拒绝生成ID */
+    FAIL,
+
+    /** 回退不超过上限时等待时钟追上上次的时间截，超过上限抛出异常 */
+    WAIT,
+
+    /** 继续沿用上次的时间截作为逻辑时钟，序列用尽后向后借用下一毫秒 */
+    LOGICAL,
+
+    /**
+     * 切换到备用机器ID(机器ID最高位置1)按当前时间继续生成，时钟追上后切回。
+     * 使用该策略时机器ID只能取0~15
+     */
+    SPARE_WORKER
+}
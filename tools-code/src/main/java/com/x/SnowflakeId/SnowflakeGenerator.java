@@ -0,0 +1,588 @@
+package com.x.SnowflakeId;
+
+import com.x.utils.lang.TimeSource;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可配置位布局的SnowFlake ID生成器<br>
+ * 通过{@link #builder()}创建，创建后配置不可变；每个实例拥有独立的生成状态，
+ * 可以按表或租户各自创建实例，互不竞争。<br>
+ * 时间截和时间单位内序列打包在同一个AtomicLong中，通过CAS推进，不持有锁。<br>
+ * 默认布局与{@link SnowflakeIdWorker}一致：41位时间截(毫秒) - 5位数据中心ID - 5位机器ID - 12位序列。
+ */
+public class SnowflakeGenerator {
+
+    // ==============================Fields===========================================
+    /** 开始时间截(毫秒) */
+    private final long epoch;
+
+    /** 时间单位(毫秒)，1为毫秒级，10为10毫秒级 */
+    private final long tickMillis;
+
+    private final int timestampBits;
+
+    private final int datacenterIdBits;
+
+    private final int workerIdBits;
+
+    private final int sequenceBits;
+
+    private final long workerId;
+
+    private final long datacenterId;
+
+    private final ClockBackwardsStrategy clockBackwardsStrategy;
+
+    /** 时间来源 */
+    private final TimeSource timeSource;
+
+    /**
+     * 时间来源允许落后上次时间截的时间单位数，不超过时视为同一时间单位而不是时钟回退。
+     * 缓存时钟(如{@link com.x.utils.lang.CachedTimeSource})比系统时钟最多落后一个刷新间隔，再留一个间隔给刷新线程的调度延迟；
+     * 从系统时钟切换到缓存时钟时，共享的生成状态可能领先新时钟这么多
+     */
+    private final long lagToleranceTicks;
+
+    /** WAIT策略允许等待的最大回退毫秒数 */
+    private final long maxBackwardsMillis;
+
+    /** WAIT策略允许等待的最大回退时间(时间单位数)，不足一个时间单位的部分向上取整 */
+    private final long maxBackwardsTicks;
+
+    /** 机器ID左移位数 */
+    private final int workerIdShift;
+
+    /** 数据中心ID左移位数 */
+    private final int datacenterIdShift;
+
+    /** 时间截左移位数 */
+    private final int timestampLeftShift;
+
+    /** 序列掩码 */
+    private final long sequenceMask;
+
+    /** 时间截最大值 */
+    private final long maxTimestamp;
+
+    /** 备用机器ID位，机器ID的最高位 */
+    private final long spareWorkerBit;
+
+    /** 状态中标记正在使用备用机器ID的位，位于时间截之上；没有机器ID位时为0 */
+    private final long spareFlag;
+
+    /**
+     * 生成状态：高位为上次生成ID的时间截(相对epoch)，低sequenceBits位为时间单位内序列。
+     * 初始值-1表示尚未生成过ID
+     */
+    private final AtomicLong state;
+
+    /** 主机器ID已使用过的最大时间截，SPARE_WORKER策略在时钟超过它之后切回主机器ID */
+    private final AtomicLong primaryHighWater;
+
+    /** 备用机器ID已使用过的最大时间截，时钟未超过它时不能再次切到备用机器ID */
+    private final AtomicLong spareHighWater;
+
+    /** 检测到时钟回退的次数 */
+    private final AtomicLong clockBackwardsCount;
+
+    /** WAIT策略等待时钟追上的次数 */
+    private final AtomicLong clockBackwardsWaitCount;
+
+    /** LOGICAL策略沿用逻辑时钟的次数 */
+    private final AtomicLong clockBackwardsLogicalCount;
+
+    /** SPARE_WORKER策略切换到备用机器ID的次数 */
+    private final AtomicLong spareWorkerSwitchCount;
+
+    /** 因时钟回退拒绝生成ID的次数 */
+    private final AtomicLong clockBackwardsRefusedCount;
+
+    //==============================Constructors=====================================
+    private SnowflakeGenerator(Builder builder, SnowflakeGenerator shared) {
+        this.epoch = builder.epoch;
+        this.tickMillis = builder.tickMillis;
+        this.timestampBits = builder.timestampBits;
+        this.datacenterIdBits = builder.datacenterIdBits;
+        this.workerIdBits = builder.workerIdBits;
+        this.sequenceBits = builder.sequenceBits;
+        this.workerId = builder.workerId;
+        this.datacenterId = builder.datacenterId;
+        this.clockBackwardsStrategy = builder.clockBackwardsStrategy;
+        this.timeSource = builder.timeSource;
+        long lagToleranceMillis = 2 * builder.timeSource.getTickMillis();
+        this.lagToleranceTicks = lagToleranceMillis <= 0 ? 0L : lagToleranceMillis / builder.tickMillis
+                + (lagToleranceMillis % builder.tickMillis == 0 ? 0 : 1);
+        this.maxBackwardsMillis = builder.maxBackwardsMillis;
+        this.maxBackwardsTicks = builder.maxBackwardsMillis / builder.tickMillis
+                + (builder.maxBackwardsMillis % builder.tickMillis == 0 ? 0 : 1);
+
+        this.workerIdShift = sequenceBits;
+        this.datacenterIdShift = sequenceBits + workerIdBits;
+        this.timestampLeftShift = sequenceBits + workerIdBits + datacenterIdBits;
+        this.sequenceMask = -1L ^ (-1L << sequenceBits);
+        this.maxTimestamp = -1L ^ (-1L << timestampBits);
+        this.spareWorkerBit = workerIdBits == 0 ? 0L : 1L << (workerIdBits - 1);
+        this.spareFlag = workerIdBits == 0 ? 0L : 1L << (timestampBits + sequenceBits);
+
+        if (shared != null) {
+            //布局相同的生成器共享生成状态，切换配置时不会产生重复ID
+            this.state = shared.state;
+            this.primaryHighWater = shared.primaryHighWater;
+            this.spareHighWater = shared.spareHighWater;
+            this.clockBackwardsCount = shared.clockBackwardsCount;
+            this.clockBackwardsWaitCount = shared.clockBackwardsWaitCount;
+            this.clockBackwardsLogicalCount = shared.clockBackwardsLogicalCount;
+            this.spareWorkerSwitchCount = shared.spareWorkerSwitchCount;
+            this.clockBackwardsRefusedCount = shared.clockBackwardsRefusedCount;
+        } else {
+            this.state = new AtomicLong(-1L);
+            this.primaryHighWater = new AtomicLong(-1L);
+            this.spareHighWater = new AtomicLong(-1L);
+            this.clockBackwardsCount = new AtomicLong();
+            this.clockBackwardsWaitCount = new AtomicLong();
+            this.clockBackwardsLogicalCount = new AtomicLong();
+            this.spareWorkerSwitchCount = new AtomicLong();
+            this.clockBackwardsRefusedCount = new AtomicLong();
+        }
+    }
+
+    /**
+     * @return 默认布局的构建器
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return 以当前配置为初始值的构建器
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .epoch(epoch)
+                .tickMillis(tickMillis)
+                .timestampBits(timestampBits)
+                .datacenterIdBits(datacenterIdBits)
+                .workerIdBits(workerIdBits)
+                .sequenceBits(sequenceBits)
+                .workerId(workerId)
+                .datacenterId(datacenterId)
+                .clockBackwards(clockBackwardsStrategy, maxBackwardsMillis)
+                .timeSource(timeSource);
+    }
+
+    // ==============================Methods==========================================
+    /**
+     * 获得下一个ID (该方法是线程安全的)
+     * @return SnowflakeId
+     */
+    public long nextId() {
+        return toId(reserve(1));
+    }
+
+    /**
+     * 批量获得ID，每次CAS预留当前时间单位内尽可能多的连续序列 (该方法是线程安全的)
+     * @param n 需要的ID数量
+     * @return 按生成顺序排列的ID
+     */
+    public long[] nextIds(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException(String.format("id count can't be less than 0: %d", n));
+        }
+        long[] ids = new long[n];
+        fill(ids, 0, n);
+        return ids;
+    }
+
+    /**
+     * 生成ID填充ids[from, to) (该方法是线程安全的)
+     */
+    public void fill(long[] ids, int from, int to) {
+        while (from < to) {
+            long first = reserve(to - from);
+            int count = reservedCount(first, to - from);
+            for (int i = 0; i < count; i++) {
+                ids[from++] = toId(first + i);
+            }
+        }
+    }
+
+    /**
+     * 在一次CAS中预留同一时间单位内最多max个连续序列
+     * @param max 最多预留的数量
+     * @return 预留块的第一个状态值，预留数量见{@link #reservedCount(long, int)}
+     */
+    private long reserve(int max) {
+        for (;;) {
+            //先读状态再读时钟，保证读到的时间不早于其他线程已发布的时间截
+            long current = state.get();
+            long timestamp = timeGen();
+            long lastTimestamp = current < 0 ? -1L : (current & ~spareFlag) >>> sequenceBits;
+            long flag = current < 0 ? 0L : current & spareFlag;
+            boolean borrow = false;
+
+            //时间来源落后不超过刷新间隔(缓存时钟)，沿用上次的时间截
+            if (timestamp < lastTimestamp && lastTimestamp - timestamp <= lagToleranceTicks) {
+                timestamp = lastTimestamp;
+            }
+
+            //如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过，按回退策略处理
+            if (timestamp < lastTimestamp) {
+                clockBackwardsCount.incrementAndGet();
+                if (clockBackwardsStrategy == ClockBackwardsStrategy.WAIT && lastTimestamp - timestamp <= maxBackwardsTicks) {
+                    //等待时钟追上上次的时间截后按正常流程生成
+                    clockBackwardsWaitCount.incrementAndGet();
+                    timestamp = tilNextTick(lastTimestamp - 1);
+                } else if (clockBackwardsStrategy == ClockBackwardsStrategy.LOGICAL) {
+                    //沿用上次的时间截，序列用尽时借用下一时间单位
+                    clockBackwardsLogicalCount.incrementAndGet();
+                    timestamp = lastTimestamp;
+                    borrow = true;
+                } else if (clockBackwardsStrategy == ClockBackwardsStrategy.SPARE_WORKER && flag == 0 && timestamp > spareHighWater.get()) {
+                    //切换到备用机器ID，按回退后的时间重新开始
+                    primaryHighWater.accumulateAndGet(lastTimestamp, Math::max);
+                    long first = (timestamp << sequenceBits) | spareFlag;
+                    if (state.compareAndSet(current, first + reservedCount(first, max) - 1)) {
+                        spareWorkerSwitchCount.incrementAndGet();
+                        return first;
+                    }
+                    continue;
+                } else {
+                    clockBackwardsRefusedCount.incrementAndGet();
+                    throw new RuntimeException(
+                            String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", (lastTimestamp - timestamp) * tickMillis));
+                }
+            }
+
+            long first;
+            //如果是同一时间生成的，则进行时间单位内序列
+            if (lastTimestamp == timestamp) {
+                //时间单位内序列溢出
+                if ((current & sequenceMask) == sequenceMask) {
+                    if (borrow) {
+                        //逻辑时钟借用下一时间单位
+                        first = ((lastTimestamp + 1) << sequenceBits) | flag;
+                    } else {
+                        //阻塞到下一个时间单位后重新竞争
+                        tilNextTick(lastTimestamp);
+                        continue;
+                    }
+                } else {
+                    first = current + 1;
+                }
+            }
+            //时间戳改变，时间单位内序列重置
+            else {
+                if (flag != 0 && timestamp > primaryHighWater.get()) {
+                    //时钟已超过主机器ID用过的时间，切回主机器ID
+                    spareHighWater.accumulateAndGet(lastTimestamp, Math::max);
+                    flag = 0L;
+                }
+                first = (timestamp << sequenceBits) | flag;
+            }
+
+            if (state.compareAndSet(current, first + reservedCount(first, max) - 1)) {
+                return first;
+            }
+        }
+    }
+
+    /**
+     * 预留块的大小：不超过max，且不跨越当前时间单位
+     */
+    private int reservedCount(long first, int max) {
+        return (int) Math.min(max, sequenceMask - (first & sequenceMask) + 1);
+    }
+
+    /**
+     * 移位并通过或运算拼到一起组成64位的ID
+     * @param packed 时间截与序列打包后的状态值
+     */
+    private long toId(long packed) {
+        long worker = (packed & spareFlag) == 0 ? workerId : workerId | spareWorkerBit;
+        return (((packed & ~spareFlag) >>> sequenceBits) << timestampLeftShift) //
+                | (datacenterId << datacenterIdShift) //
+                | (worker << workerIdShift) //
+                | (packed & sequenceMask);
+    }
+
+    /**
+     * 阻塞到下一个时间单位，直到获得新的时间戳
+     * @param lastTimestamp 上次生成ID的时间截(相对epoch)
+     * @return 当前时间戳(相对epoch)
+     */
+    protected long tilNextTick(long lastTimestamp) {
+        long timestamp = timeGen();
+        while (timestamp <= lastTimestamp) {
+            timestamp = timeGen();
+        }
+        return timestamp;
+    }
+
+    /**
+     * 返回相对epoch的当前时间(时间单位数)
+     */
+    protected long timeGen() {
+        long timestamp = (timeSource.currentTimeMillis() - epoch) / tickMillis;
+        if (timestamp > maxTimestamp) {
+            throw new IllegalStateException(String.format("timestamp exceeds %d bits, epoch %d is too old", timestampBits, epoch));
+        }
+        return timestamp;
+    }
+
+    /**
+     * 按当前位布局解析ID
+     * @param id 该布局生成的ID
+     * @return 时间截、数据中心ID、机器ID和序列
+     */
+    public SnowflakeIdInfo parse(long id) {
+        long timestamp = (id >>> timestampLeftShift) * tickMillis + epoch;
+        long datacenterId = (id >>> datacenterIdShift) & (-1L ^ (-1L << datacenterIdBits));
+        long workerId = (id >>> workerIdShift) & (-1L ^ (-1L << workerIdBits));
+        return new SnowflakeIdInfo(id, timestamp, datacenterId, workerId, id & sequenceMask);
+    }
+
+    /**
+     * 指定时间生成的ID的下界，与{@link #maxIdAt(Instant)}配合，
+     * 可以把按创建时间查询转换为主键范围扫描：id BETWEEN minIdAt(T1) AND maxIdAt(T2)
+     * @param instant 时间，不能早于epoch
+     * @return 该时间单位内所有节点可能生成的最小ID
+     */
+    public long minIdAt(Instant instant) {
+        return toTick(instant) << timestampLeftShift;
+    }
+
+    /**
+     * 指定时间生成的ID的上界
+     * @param instant 时间，不能早于epoch
+     * @return 该时间单位内所有节点可能生成的最大ID
+     */
+    public long maxIdAt(Instant instant) {
+        return (toTick(instant) << timestampLeftShift) | (-1L ^ (-1L << timestampLeftShift));
+    }
+
+    private long toTick(Instant instant) {
+        long millis = instant.toEpochMilli();
+        if (millis < epoch) {
+            throw new IllegalArgumentException(String.format("instant can't be earlier than epoch %d: %d", epoch, millis));
+        }
+        return Math.min((millis - epoch) / tickMillis, maxTimestamp);
+    }
+
+    /**
+     * 是否与另一个生成器的位布局和时间单位相同
+     */
+    boolean sameLayout(SnowflakeGenerator other) {
+        return epoch == other.epoch
+                && tickMillis == other.tickMillis
+                && timestampBits == other.timestampBits
+                && datacenterIdBits == other.datacenterIdBits
+                && workerIdBits == other.workerIdBits
+                && sequenceBits == other.sequenceBits;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public long getDatacenterId() {
+        return datacenterId;
+    }
+
+    public ClockBackwardsStrategy getClockBackwardsStrategy() {
+        return clockBackwardsStrategy;
+    }
+
+    /**
+     * @return WAIT策略允许等待的最大回退毫秒数
+     */
+    public long getMaxBackwardsMillis() {
+        return maxBackwardsMillis;
+    }
+
+    /**
+     * @return 检测到时钟回退的次数
+     */
+    public long getClockBackwardsCount() {
+        return clockBackwardsCount.get();
+    }
+
+    /**
+     * @return WAIT策略等待时钟追上的次数
+     */
+    public long getClockBackwardsWaitCount() {
+        return clockBackwardsWaitCount.get();
+    }
+
+    /**
+     * @return LOGICAL策略沿用逻辑时钟的次数
+     */
+    public long getClockBackwardsLogicalCount() {
+        return clockBackwardsLogicalCount.get();
+    }
+
+    /**
+     * @return SPARE_WORKER策略切换到备用机器ID的次数
+     */
+    public long getSpareWorkerSwitchCount() {
+        return spareWorkerSwitchCount.get();
+    }
+
+    /**
+     * @return 因时钟回退拒绝生成ID的次数
+     */
+    public long getClockBackwardsRefusedCount() {
+        return clockBackwardsRefusedCount.get();
+    }
+
+    /**
+     * SnowflakeGenerator构建器，默认值与{@link SnowflakeIdWorker}的布局一致
+     */
+    public static class Builder {
+
+        /** 默认开始时间截 (2017-04-06) */
+        private long epoch = 1491454090117L;
+
+        private long tickMillis = 1L;
+
+        private int timestampBits = 41;
+
+        private int datacenterIdBits = 5;
+
+        private int workerIdBits = 5;
+
+        private int sequenceBits = 12;
+
+        private long workerId = 0L;
+
+        private long datacenterId = 0L;
+
+        private ClockBackwardsStrategy clockBackwardsStrategy = ClockBackwardsStrategy.FAIL;
+
+        private long maxBackwardsMillis = 5L;
+
+        private TimeSource timeSource = TimeSource.SYSTEM;
+
+        private Builder() {
+        }
+
+        /**
+         * @param epoch 开始时间截(毫秒)，不能晚于当前时间
+         */
+        public Builder epoch(long epoch) {
+            this.epoch = epoch;
+            return this;
+        }
+
+        /**
+         * @param tickMillis 时间单位(毫秒)，如1为毫秒级，10为10毫秒级
+         */
+        public Builder tickMillis(long tickMillis) {
+            this.tickMillis = tickMillis;
+            return this;
+        }
+
+        public Builder timestampBits(int timestampBits) {
+            this.timestampBits = timestampBits;
+            return this;
+        }
+
+        public Builder datacenterIdBits(int datacenterIdBits) {
+            this.datacenterIdBits = datacenterIdBits;
+            return this;
+        }
+
+        public Builder workerIdBits(int workerIdBits) {
+            this.workerIdBits = workerIdBits;
+            return this;
+        }
+
+        public Builder sequenceBits(int sequenceBits) {
+            this.sequenceBits = sequenceBits;
+            return this;
+        }
+
+        public Builder workerId(long workerId) {
+            this.workerId = workerId;
+            return this;
+        }
+
+        public Builder datacenterId(long datacenterId) {
+            this.datacenterId = datacenterId;
+            return this;
+        }
+
+        /**
+         * @param strategy 时钟回退策略
+         * @param maxBackwardsMillis WAIT策略允许等待的最大回退毫秒数
+         */
+        public Builder clockBackwards(ClockBackwardsStrategy strategy, long maxBackwardsMillis) {
+            this.clockBackwardsStrategy = strategy;
+            this.maxBackwardsMillis = maxBackwardsMillis;
+            return this;
+        }
+
+        /**
+         * @param timeSource 时间来源，默认为系统时钟，可使用{@link com.x.utils.lang.CachedTimeSource}
+         */
+        public Builder timeSource(TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        public SnowflakeGenerator build() {
+            return build(null);
+        }
+
+        /**
+         * @param shared 位布局相同时与之共享生成状态和计数，为null时使用独立状态
+         */
+        SnowflakeGenerator build(SnowflakeGenerator shared) {
+            if (tickMillis <= 0) {
+                throw new IllegalArgumentException(String.format("tick millis must be greater than 0: %d", tickMillis));
+            }
+            if (epoch < 0 || epoch > System.currentTimeMillis()) {
+                throw new IllegalArgumentException(String.format("epoch can't be in the future or less than 0: %d", epoch));
+            }
+            if (timestampBits <= 0 || sequenceBits <= 0 || datacenterIdBits < 0 || workerIdBits < 0) {
+                throw new IllegalArgumentException("timestamp and sequence bits must be greater than 0, worker and datacenter bits can't be less than 0");
+            }
+            if (timestampBits + datacenterIdBits + workerIdBits + sequenceBits > 63) {
+                throw new IllegalArgumentException(String.format("total bits can't be greater than 63: %d",
+                        timestampBits + datacenterIdBits + workerIdBits + sequenceBits));
+            }
+            long maxWorkerId = -1L ^ (-1L << workerIdBits);
+            long maxDatacenterId = -1L ^ (-1L << datacenterIdBits);
+            if (workerId > maxWorkerId || workerId < 0) {
+                throw new IllegalArgumentException(String.format("worker Id can't be greater than %d or less than 0", maxWorkerId));
+            }
+            if (datacenterId > maxDatacenterId || datacenterId < 0) {
+                throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", maxDatacenterId));
+            }
+            if (timeSource == null) {
+                throw new IllegalArgumentException("time source can't be null");
+            }
+            if (clockBackwardsStrategy == null) {
+                throw new IllegalArgumentException("clock backwards strategy can't be null");
+            }
+            if (maxBackwardsMillis < 0) {
+                throw new IllegalArgumentException(String.format("max backwards millis can't be less than 0: %d", maxBackwardsMillis));
+            }
+            if (clockBackwardsStrategy == ClockBackwardsStrategy.SPARE_WORKER) {
+                if (workerIdBits == 0) {
+                    throw new IllegalArgumentException("spare worker needs at least 1 worker bit");
+                }
+                long spareWorkerBit = 1L << (workerIdBits - 1);
+                if ((workerId & spareWorkerBit) != 0) {
+                    throw new IllegalArgumentException(String.format("worker Id can't be greater than %d when using spare worker", spareWorkerBit - 1));
+                }
+            }
+            SnowflakeGenerator generator = new SnowflakeGenerator(this, null);
+            if (shared != null && generator.sameLayout(shared)) {
+                return new SnowflakeGenerator(this, shared);
+            }
+            return generator;
+        }
+    }
+}
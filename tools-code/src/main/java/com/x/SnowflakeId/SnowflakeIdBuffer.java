@@ -0,0 +1,179 @@
+package com.x.SnowflakeId;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 预生成ID的环形缓冲区<br>
+ * 单个守护线程负责生产，剩余ID数降到低水位时补满；调用方通过CAS移动读指针取ID，不加锁。<br>
+ * 缓冲区被取空时调用方直接生成ID并记一次补充停顿，不会等待后台线程。<br>
+ * 注意：缓冲区中的ID是提前生成的，其时间截早于取出的时间。
+ */
+public class SnowflakeIdBuffer {
+    private static Logger log = LoggerFactory.getLogger(SnowflakeIdBuffer.class);
+
+    /** 后台线程空闲时的最长休眠时间(纳秒) */
+    private static final long PARK_NANOS = 10_000_000L;
+
+    private final SnowflakeGenerator generator;
+
+    private final long[] buffer;
+
+    /** 下标掩码，容量为2的幂时 index & mask 等价于取模 */
+    private final int mask;
+
+    private final int lowWaterMark;
+
+    /** 读指针，已被取走的ID总数 */
+    private final AtomicLong head = new AtomicLong();
+
+    /** 写指针，已发布的ID总数 */
+    private final AtomicLong tail = new AtomicLong();
+
+    /** 后台线程补充次数 */
+    private final AtomicLong refillCount = new AtomicLong();
+
+    /** 缓冲区取空、调用方只能直接生成的次数 */
+    private final AtomicLong stallCount = new AtomicLong();
+
+    /** 后台线程是否处于休眠，调用方据此决定是否唤醒 */
+    private final AtomicBoolean sleeping = new AtomicBoolean();
+
+    private final Thread refillThread;
+
+    private volatile boolean running = true;
+
+    /**
+     * 创建缓冲区并启动后台补充线程
+     * @param generator 生成ID的生成器
+     * @param capacity 缓冲区容量，必须是2的幂
+     * @param lowWaterMark 剩余ID数不高于该值时触发补充
+     */
+    public SnowflakeIdBuffer(SnowflakeGenerator generator, int capacity, int lowWaterMark) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException(String.format("buffer capacity must be a power of two: %d", capacity));
+        }
+        if (lowWaterMark < 0 || lowWaterMark >= capacity) {
+            throw new IllegalArgumentException(String.format("low water mark must be between 0 and %d: %d", capacity - 1, lowWaterMark));
+        }
+        this.generator = generator;
+        this.buffer = new long[capacity];
+        this.mask = capacity - 1;
+        this.lowWaterMark = lowWaterMark;
+        this.refillThread = new Thread(new Runnable() {
+            public void run() {
+                refillLoop();
+            }
+        }, "snowflake-id-refill");
+        this.refillThread.setDaemon(true);
+        this.refillThread.start();
+    }
+
+    /**
+     * 取一个预生成的ID，缓冲区为空时直接生成
+     * @return SnowflakeId
+     */
+    public long take() {
+        for (;;) {
+            long h = head.get();
+            long t = tail.get();
+            if (h >= t) {
+                stallCount.incrementAndGet();
+                wakeUp();
+                return generator.nextId();
+            }
+            //先读值再CAS：CAS成功说明该槽位在读取时尚未被生产者覆盖
+            long id = buffer[(int) (h & mask)];
+            if (head.compareAndSet(h, h + 1)) {
+                if (t - h - 1 <= lowWaterMark) {
+                    wakeUp();
+                }
+                return id;
+            }
+        }
+    }
+
+    private void wakeUp() {
+        if (sleeping.get() && sleeping.compareAndSet(true, false)) {
+            LockSupport.unpark(refillThread);
+        }
+    }
+
+    private void refillLoop() {
+        while (running) {
+            long t = tail.get();
+            long occupancy = t - head.get();
+            if (occupancy > lowWaterMark) {
+                sleeping.set(true);
+                //设置标记后再检查一次，避免错过调用方的唤醒
+                if (tail.get() - head.get() > lowWaterMark) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                sleeping.set(false);
+                continue;
+            }
+            int free = (int) (buffer.length - occupancy);
+            int from = (int) (t & mask);
+            int to = Math.min(from + free, buffer.length);
+            try {
+                generator.fill(buffer, from, to);
+                //环形回绕的部分
+                generator.fill(buffer, 0, free - (to - from));
+            } catch (RuntimeException e) {
+                //时钟回退被拒绝时本轮作废，调用方取空后直接生成并得到异常
+                log.error("snowflake id buffer refill failed", e);
+                LockSupport.parkNanos(this, PARK_NANOS);
+                continue;
+            }
+            tail.set(t + free);
+            refillCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 停止后台补充线程
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(refillThread);
+    }
+
+    /**
+     * @return 缓冲区容量
+     */
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * @return 触发补充的低水位
+     */
+    public int getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    /**
+     * @return 当前缓冲区中剩余的ID数
+     */
+    public long getOccupancy() {
+        return Math.max(0L, tail.get() - head.get());
+    }
+
+    /**
+     * @return 后台线程补充次数
+     */
+    public long getRefillCount() {
+        return refillCount.get();
+    }
+
+    /**
+     * @return 缓冲区取空、调用方直接生成ID的次数
+     */
+    public long getStallCount() {
+        return stallCount.get();
+    }
+}
@@ -0,0 +1,63 @@
+package com.x.SnowflakeId;
+
+import java.time.Instant;
+
+/**
+ * SnowflakeId解析结果
+ */
+public class SnowflakeIdInfo {
+
+    /** 原始ID */
+    private final long id;
+
+    /** 生成时间截(毫秒)，时间单位大于1毫秒时为所在时间单位的起始时间 */
+    private final long timestamp;
+
+    private final long datacenterId;
+
+    private final long workerId;
+
+    /** 时间单位内序列 */
+    private final long sequence;
+
+    SnowflakeIdInfo(long id, long timestamp, long datacenterId, long workerId, long sequence) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.datacenterId = datacenterId;
+        this.workerId = workerId;
+        this.sequence = sequence;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return 生成时间
+     */
+    public Instant getInstant() {
+        return Instant.ofEpochMilli(timestamp);
+    }
+
+    public long getDatacenterId() {
+        return datacenterId;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "SnowflakeIdInfo{id=" + id + ", timestamp=" + timestamp + ", datacenterId=" + datacenterId
+                + ", workerId=" + workerId + ", sequence=" + sequence + "}";
+    }
+}
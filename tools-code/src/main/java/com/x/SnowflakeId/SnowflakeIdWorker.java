@@ -1,5 +1,10 @@
 package com.x.SnowflakeId;
 
+import com.x.utils.lang.TimeSource;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
 /**
  * Twitter_Snowflake<br>
  * SnowFlake的结构如下(每部分用-分开):<br>
@@ -10,129 +15,238 @@ package com.x.SnowflakeId;
  * 10位的数据机器位，可以部署在1024个节点，包括5位datacenterId和5位workerId<br>
  * 12位序列，毫秒内的计数，12位的计数顺序号支持每个节点每毫秒(同一机器，同一时间截)产生4096个ID序号<br>
  * 加起来刚好64位，为一个Long型。<br>
- * SnowFlake的优点是，整体上按照时间自增排序，并且整个分布式系统内不会产生ID碰撞(由数据中心ID和机器ID作区分)，并且效率较高，经测试，SnowFlake每秒能够产生26万ID左右。
+ * SnowFlake的优点是，整体上按照时间自增排序，并且整个分布式系统内不会产生ID碰撞(由数据中心ID和机器ID作区分)，并且效率较高，经测试，SnowFlake每秒能够产生26万ID左右。<br>
+ * 时间截和毫秒内序列打包在同一个AtomicLong中，通过CAS推进，生成ID时不再持有类锁。<br>
+ * 本类是默认布局{@link SnowflakeGenerator}的静态入口，需要其他位布局或多个独立生成器时直接使用SnowflakeGenerator。
  */
 public class SnowflakeIdWorker {
 
     // ==============================Fields===========================================
-    /** 开始时间截 (2017-04-06) */
-    private final static long twepoch = 1491454090117L;
-
-    /** 机器id所占的位数 */
-    private final static long workerIdBits = 5L;
+    /** 当前使用的生成器，配置变更时整体替换，生成过程中不会读到一半的配置 */
+    private static volatile SnowflakeGenerator generator = SnowflakeGenerator.builder().build();
 
-    /** 数据标识id所占的位数 */
-    private final static long datacenterIdBits = 5L;
+    /** 通过{@link #config(Path, long)}租用的机器ID租约，失效后拒绝生成ID */
+    private static volatile WorkerIdLease lease;
 
-    /** 支持的最大机器id，结果是31 (这个移位算法可以很快的计算出几位二进制数所能表示的最大十进制数) */
-    private final static long maxWorkerId = -1L ^ (-1L << workerIdBits);
+    /** 预生成ID的环形缓冲区，为null时直接生成 */
+    private static volatile SnowflakeIdBuffer buffer;
 
-    /** 支持的最大数据标识id，结果是31 */
-    private final static long maxDatacenterId = -1L ^ (-1L << datacenterIdBits);
-
-    /** 序列在id中占的位数 */
-    private final static long sequenceBits = 12L;
+    //==============================Constructors=====================================
+    private SnowflakeIdWorker(){};
+    
+    /**
+     * 构造函数
+     * @param workerId 工作ID (0~31)
+     * @param datacenterId 数据中心ID (0~31)
+     */
+    public static synchronized void config(long workerId, long datacenterId) {
+        replace(generator.toBuilder().workerId(workerId).datacenterId(datacenterId));
+        switchLease(null);
+    }
 
-    /** 机器ID向左移12位 */
-    private final static long workerIdShift = sequenceBits;
+    /**
+     * 从共享目录租用一个空闲的机器ID并完成配置，同一主机上的多个JVM不会拿到相同的机器ID。
+     * 租约丢失(被其他进程接管或长时间无法刷新)或关闭后，生成ID时抛出IllegalStateException，
+     * 需要重新调用本方法租用新的机器ID
+     * @param directory 共享目录
+     * @param datacenterId 数据中心ID (0~31)
+     * @return 租约，应用关闭时调用close()释放，JVM退出时也会自动释放
+     */
+    public static synchronized WorkerIdLease config(Path directory, long datacenterId) {
+        //使用备用机器ID策略时只能租用0~15
+        long maxWorkerId = generator.getClockBackwardsStrategy() == ClockBackwardsStrategy.SPARE_WORKER ? 15L : 31L;
+        WorkerIdLease lease = WorkerIdLease.acquire(directory, maxWorkerId,
+                WorkerIdLease.DEFAULT_HEARTBEAT_MILLIS, WorkerIdLease.DEFAULT_LEASE_TIMEOUT_MILLIS);
+        try {
+            replace(generator.toBuilder().workerId(lease.getWorkerId()).datacenterId(datacenterId));
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        switchLease(lease);
+        return lease;
+    }
 
-    /** 数据标识id向左移17位(12+5) */
-    private final static long datacenterIdShift = sequenceBits + workerIdBits;
+    /**
+     * 换上新的租约并关闭原来的，释放不再使用的机器ID和心跳线程
+     */
+    private static void switchLease(WorkerIdLease next) {
+        WorkerIdLease old = lease;
+        lease = next;
+        if (old != null) {
+            old.close();
+        }
+    }
 
-    /** 时间截向左移22位(5+5+12) */
-    private final static long timestampLeftShift = sequenceBits + workerIdBits + datacenterIdBits;
+    /**
+     * 设置时钟回退策略，默认为FAIL
+     * @param strategy 回退策略
+     * @param maxBackwardsMillis WAIT策略允许等待的最大回退毫秒数
+     */
+    public static synchronized void configClockBackwards(ClockBackwardsStrategy strategy, long maxBackwardsMillis) {
+        replace(generator.toBuilder().clockBackwards(strategy, maxBackwardsMillis));
+    }
 
-    /** 生成序列的掩码，这里为4095 (0b111111111111=0xfff=4095) */
-    private final static long sequenceMask = -1L ^ (-1L << sequenceBits);
+    /**
+     * 设置时间来源，默认为系统时钟。
+     * 切换到缓存时钟后，新时钟落后已生成ID的时间截不超过刷新间隔时沿用该时间截继续生成，不会被当作时钟回退
+     * @param timeSource 时间来源，如{@link com.x.utils.lang.CachedTimeSource#getInstance()}
+     */
+    public static synchronized void configTimeSource(TimeSource timeSource) {
+        replace(generator.toBuilder().timeSource(timeSource));
+    }
 
-    /** 工作机器ID(0~31) */
-    private static long workerId = 0L;
+    /**
+     * 替换生成器，新生成器沿用原有的生成状态；开启了预生成模式时重建缓冲区，丢弃按旧配置生成的ID
+     */
+    private static void replace(SnowflakeGenerator.Builder builder) {
+        generator = builder.build(generator);
+        SnowflakeIdBuffer old = buffer;
+        if (old != null) {
+            buffer = new SnowflakeIdBuffer(generator, old.getCapacity(), old.getLowWaterMark());
+            old.shutdown();
+        }
+    }
 
-    /** 数据中心ID(0~31) */
-    private static long datacenterId = 0L;
+    /**
+     * 开启预生成模式：后台守护线程预先填充环形缓冲区，调用方直接从缓冲区取ID，
+     * 突发超过每毫秒4096个ID时，等待下一毫秒的自旋由后台线程承担
+     * @param capacity 缓冲区容量，必须是2的幂
+     * @param lowWaterMark 剩余ID数不高于该值时触发补充
+     */
+    public static synchronized void enableBuffer(int capacity, int lowWaterMark) {
+        SnowflakeIdBuffer old = buffer;
+        buffer = new SnowflakeIdBuffer(generator, capacity, lowWaterMark);
+        if (old != null) {
+            old.shutdown();
+        }
+    }
 
-    /** 毫秒内序列(0~4095) */
-    private static long sequence = 0L;
+    /**
+     * 关闭预生成模式，缓冲区中剩余的ID被丢弃
+     */
+    public static synchronized void disableBuffer() {
+        SnowflakeIdBuffer old = buffer;
+        buffer = null;
+        if (old != null) {
+            old.shutdown();
+        }
+    }
 
-    /** 上次生成ID的时间截 */
-    private static long lastTimestamp = -1L;
+    /**
+     * 当前使用的缓冲区，用于查看占用和补充统计
+     * @return 未开启预生成模式时返回null
+     */
+    public static SnowflakeIdBuffer getBuffer() {
+        return buffer;
+    }
 
-    //==============================Constructors=====================================
-    private SnowflakeIdWorker(){};
-    
     /**
-     * 构造函数
-     * @param workerId 工作ID (0~31)
-     * @param datacenterId 数据中心ID (0~31)
+     * 当前使用的生成器，用于查看时钟回退计数等
      */
-    public static void config(long workerId, long datacenterId) {
-        if (workerId > maxWorkerId || workerId < 0) {
-            throw new IllegalArgumentException(String.format("worker Id can't be greater than %d or less than 0", maxWorkerId));
-        }
-        if (datacenterId > maxDatacenterId || datacenterId < 0) {
-            throw new IllegalArgumentException(String.format("datacenter Id can't be greater than %d or less than 0", maxDatacenterId));
-        }
-        SnowflakeIdWorker.workerId = workerId;
-        SnowflakeIdWorker.datacenterId = datacenterId;
+    public static SnowflakeGenerator getGenerator() {
+        return generator;
     }
-    
+
     // ==============================Methods==========================================
     /**
      * 获得下一个ID (该方法是线程安全的)
      * @return SnowflakeId
      */
-    public static synchronized String nextId() {
-        long timestamp = timeGen();
+    public static String nextId() {
+        return Long.toString(nextLongId());
+    }
 
-        //如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException(
-                    String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
+    /**
+     * 获得下一个ID，直接返回long，省去字符串转换 (该方法是线程安全的)
+     * @return SnowflakeId
+     */
+    public static long nextLongId() {
+        checkLease();
+        SnowflakeIdBuffer buffer = SnowflakeIdWorker.buffer;
+        if (buffer != null) {
+            return buffer.take();
         }
+        return generator.nextId();
+    }
 
-        //如果是同一时间生成的，则进行毫秒内序列
-        if (lastTimestamp == timestamp) {
-            sequence = (sequence + 1) & sequenceMask;
-            //毫秒内序列溢出
-            if (sequence == 0) {
-                //阻塞到下一个毫秒,获得新的时间戳
-                timestamp = tilNextMillis(lastTimestamp);
-            }
-        }
-        //时间戳改变，毫秒内序列重置
-        else {
-            sequence = 0L;
+    /**
+     * 批量获得ID，每次CAS预留当前毫秒内尽可能多的连续序列，
+     * 批量入库时只需少量同步即可拿到全部ID (该方法是线程安全的)
+     * @param n 需要的ID数量
+     * @return 按生成顺序排列的ID
+     */
+    public static long[] nextIds(int n) {
+        checkLease();
+        return generator.nextIds(n);
+    }
+
+    /**
+     * 租用的机器ID已失效时拒绝生成，其他进程可能正在使用该机器ID
+     */
+    private static void checkLease() {
+        WorkerIdLease lease = SnowflakeIdWorker.lease;
+        if (lease != null && !lease.isValid()) {
+            throw new IllegalStateException(String.format("worker Id %d lease is %s, refusing to generate id",
+                    lease.getWorkerId(), lease.isLost() ? "lost" : lease.isClosed() ? "closed" : "expired"));
         }
+    }
 
-        //上次生成ID的时间截
-        lastTimestamp = timestamp;
+    /**
+     * 解析ID的时间截、数据中心ID、机器ID和序列
+     * @param id SnowflakeId
+     */
+    public static SnowflakeIdInfo parse(long id) {
+        return generator.parse(id);
+    }
 
-        //移位并通过或运算拼到一起组成64位的ID
-        long id = ((timestamp - twepoch) << timestampLeftShift) //
-                | (datacenterId << datacenterIdShift) //
-                | (workerId << workerIdShift) //
-                | sequence;
-        return id+"";
+    /**
+     * 指定时间生成的ID的下界，按时间范围查询时可改为主键范围扫描：
+     * id BETWEEN minIdAt(T1) AND maxIdAt(T2)
+     */
+    public static long minIdAt(Instant instant) {
+        return generator.minIdAt(instant);
     }
 
     /**
-     * 阻塞到下一个毫秒，直到获得新的时间戳
-     * @param lastTimestamp 上次生成ID的时间截
-     * @return 当前时间戳
+     * 指定时间生成的ID的上界
      */
-    protected static long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
-        }
-        return timestamp;
+    public static long maxIdAt(Instant instant) {
+        return generator.maxIdAt(instant);
+    }
+
+    /**
+     * @return 检测到时钟回退的次数
+     */
+    public static long getClockBackwardsCount() {
+        return generator.getClockBackwardsCount();
+    }
+
+    /**
+     * @return WAIT策略等待时钟追上的次数
+     */
+    public static long getClockBackwardsWaitCount() {
+        return generator.getClockBackwardsWaitCount();
+    }
+
+    /**
+     * @return LOGICAL策略沿用逻辑时钟的次数
+     */
+    public static long getClockBackwardsLogicalCount() {
+        return generator.getClockBackwardsLogicalCount();
+    }
+
+    /**
+     * @return SPARE_WORKER策略切换到备用机器ID的次数
+     */
+    public static long getSpareWorkerSwitchCount() {
+        return generator.getSpareWorkerSwitchCount();
     }
 
     /**
-     * 返回以毫秒为单位的当前时间
-     * @return 当前时间(毫秒)
+     * @return 因时钟回退拒绝生成ID的次数
      */
-    protected static long timeGen() {
-        return System.currentTimeMillis();
+    public static long getClockBackwardsRefusedCount() {
+        return generator.getClockBackwardsRefusedCount();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,316 @@
+package com.x.SnowflakeId;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于本地文件锁的机器ID租约<br>
+ * 共享目录下每个机器ID对应一个锁文件(worker-N.lock)，文件内容为租约记录"持有者|心跳时间"。
+ * 读写租约记录时用FileChannel.tryLock互斥，不需要任何协调服务。<br>
+ * 获得租约后后台线程定期刷新心跳；心跳超时的租约(进程崩溃或挂起)可被其他进程接管；
+ * 正常关闭或JVM退出时清空记录，机器ID立即可被复用。<br>
+ * 租约被接管、或长时间刷新失败以致可能被接管时标记为丢失，之后{@link #isValid()}返回false，
+ * 使用该机器ID的生成器应停止生成。
+ */
+public class WorkerIdLease implements Closeable {
+    private static Logger log = LoggerFactory.getLogger(WorkerIdLease.class);
+
+    /** 默认心跳间隔(毫秒) */
+    public static final long DEFAULT_HEARTBEAT_MILLIS = 10_000L;
+
+    /** 默认租约超时(毫秒)，超过该时间未刷新心跳的租约可被接管 */
+    public static final long DEFAULT_LEASE_TIMEOUT_MILLIS = 60_000L;
+
+    private final Path lockFile;
+
+    private final long workerId;
+
+    /** 本租约持有者标识：进程名 + 随机串，同一JVM内的多个租约互不相同 */
+    private final String owner;
+
+    private final long heartbeatMillis;
+
+    private final long leaseTimeoutMillis;
+
+    private final ScheduledExecutorService heartbeat;
+
+    private final Thread shutdownHook;
+
+    /** 最近一次写入心跳的时间 */
+    private volatile long renewedMillis;
+
+    private volatile boolean lost;
+
+    private volatile boolean closed;
+
+    private WorkerIdLease(Path lockFile, long workerId, String owner, long renewedMillis, long heartbeatMillis, long leaseTimeoutMillis) {
+        this.lockFile = lockFile;
+        this.workerId = workerId;
+        this.owner = owner;
+        this.renewedMillis = renewedMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "worker-id-lease-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.heartbeat.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                renew();
+            }
+        }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        this.shutdownHook = new Thread(new Runnable() {
+            public void run() {
+                release();
+            }
+        }, "worker-id-lease-release");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 使用默认心跳和超时，在0~31中租用一个空闲的机器ID
+     * @param directory 共享目录，同一主机上的所有JVM使用同一目录
+     */
+    public static WorkerIdLease acquire(Path directory) {
+        return acquire(directory, 31, DEFAULT_HEARTBEAT_MILLIS, DEFAULT_LEASE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * 在0~maxWorkerId中租用一个空闲的机器ID
+     * @param directory 共享目录，不存在时创建
+     * @param maxWorkerId 机器ID上限
+     * @param heartbeatMillis 心跳间隔(毫秒)
+     * @param leaseTimeoutMillis 租约超时(毫秒)，必须大于心跳间隔
+     * @return 租约，不再使用时调用close()释放
+     */
+    public static WorkerIdLease acquire(Path directory, long maxWorkerId, long heartbeatMillis, long leaseTimeoutMillis) {
+        if (maxWorkerId < 0) {
+            throw new IllegalArgumentException(String.format("max worker Id can't be less than 0: %d", maxWorkerId));
+        }
+        if (heartbeatMillis <= 0 || leaseTimeoutMillis <= heartbeatMillis) {
+            throw new IllegalArgumentException(String.format("lease timeout %d must be greater than heartbeat %d", leaseTimeoutMillis, heartbeatMillis));
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString();
+        for (long workerId = 0; workerId <= maxWorkerId; workerId++) {
+            Path lockFile = directory.resolve("worker-" + workerId + ".lock");
+            long takenMillis = tryTake(lockFile, owner, leaseTimeoutMillis);
+            if (takenMillis > 0) {
+                log.info("leased snowflake worker id {} from {}", workerId, lockFile);
+                return new WorkerIdLease(lockFile, workerId, owner, takenMillis, heartbeatMillis, leaseTimeoutMillis);
+            }
+        }
+        throw new IllegalStateException(String.format("no free worker id between 0 and %d in %s", maxWorkerId, directory));
+    }
+
+    /**
+     * 记录为空或心跳超时时写入自己的租约记录
+     * @return 写入的心跳时间，未取得租约返回0
+     */
+    private static long tryTake(Path lockFile, String owner, long leaseTimeoutMillis) {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = tryLock(channel);
+            if (lock == null) {
+                return 0L;
+            }
+            try {
+                String[] record = read(channel);
+                long now = System.currentTimeMillis();
+                if (record != null && now - Long.parseLong(record[1]) <= leaseTimeoutMillis) {
+                    return 0L;
+                }
+                if (record != null) {
+                    log.warn("taking over stale worker id lease {} held by {}", lockFile, record[0]);
+                }
+                write(channel, owner, now);
+                return now;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            log.warn("worker id lock file " + lockFile + " is not usable", e);
+            return 0L;
+        }
+    }
+
+    /**
+     * 刷新心跳，发现租约已被接管、或到下次刷新前租约就可能超时时标记为丢失并停止刷新
+     */
+    private void renew() {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = tryLock(channel);
+            if (lock == null) {
+                //其他进程正在检查该机器ID，下次再刷新
+                checkExpiring();
+                return;
+            }
+            try {
+                String[] record = read(channel);
+                if (record == null || !owner.equals(record[0])) {
+                    markLost("was taken over");
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                write(channel, owner, now);
+                renewedMillis = now;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            log.error("renew worker id lease " + lockFile + " failed", e);
+            checkExpiring();
+        }
+    }
+
+    /**
+     * 刷新失败时检查：等不到下次刷新租约就会超时(其他进程可以接管)，按丢失处理
+     */
+    private void checkExpiring() {
+        if (isExpiring()) {
+            markLost("could not be renewed before timing out");
+        }
+    }
+
+    private void markLost(String reason) {
+        lost = true;
+        heartbeat.shutdown();
+        log.error("snowflake worker id {} lease {} {}, stop generating ids with it", workerId, lockFile, reason);
+    }
+
+    /**
+     * 清空仍属于自己的租约记录
+     */
+    private synchronized void release() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        heartbeat.shutdownNow();
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                String[] record = read(channel);
+                if (record != null && owner.equals(record[0])) {
+                    channel.truncate(0);
+                    channel.force(true);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            log.error("release worker id lease " + lockFile + " failed", e);
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            //同一JVM内的另一个租约正持有该文件锁
+            return null;
+        }
+    }
+
+    /**
+     * @return [持有者, 心跳时间]，没有记录时返回null
+     */
+    private static String[] read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0 || size > 1024) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        channel.read(buffer, 0);
+        String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        int split = content.lastIndexOf('|');
+        if (split < 0) {
+            return null;
+        }
+        try {
+            Long.parseLong(content.substring(split + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new String[] { content.substring(0, split), content.substring(split + 1) };
+    }
+
+    private static void write(FileChannel channel, String owner, long heartbeatTime) throws IOException {
+        byte[] content = (owner + "|" + heartbeatTime).getBytes(StandardCharsets.UTF_8);
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(content), 0);
+        channel.force(true);
+    }
+
+    /**
+     * @return 租到的机器ID
+     */
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * @return 租约是否已被其他进程接管(或可能已被接管)，此时继续使用该机器ID可能产生重复ID
+     */
+    public boolean isLost() {
+        return lost;
+    }
+
+    /**
+     * @return 是否已调用{@link #close()}
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return 租约是否仍然有效：没有丢失、没有关闭，且上次刷新后未超过可能被接管的时间。
+     * 进程长时间停顿(GC、容器挂起)时心跳线程来不及标记丢失，这里按刷新时间判断
+     */
+    public boolean isValid() {
+        return !lost && !closed && !isExpiring();
+    }
+
+    /**
+     * 到下次刷新前租约就可能超时，其他进程可以接管
+     */
+    private boolean isExpiring() {
+        return System.currentTimeMillis() - renewedMillis >= leaseTimeoutMillis - heartbeatMillis;
+    }
+
+    /**
+     * 停止心跳并释放机器ID
+     */
+    @Override
+    public void close() {
+        release();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            //JVM正在退出，钩子会自行执行
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.x.http;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件的一段作为请求内容，发送时通过FileChannel.transferTo按块写出，不把文件读入堆内存
+ * <p>
+ * 每次发送重新打开文件，可以重试
+ *
+ * @author M
+ */
+public class FileChannelEntity extends AbstractHttpEntity {
+
+	/**
+	 * 每次传输的字节数，也是进度回调的间隔
+	 */
+	private static final long CHUNK_BYTES = 256 * 1024;
+
+	private final Path file;
+
+	private final long offset;
+
+	private final long length;
+
+	private final ProgressListener listener;
+
+	/**
+	 * @param file
+	 * @param offset      从文件的该位置开始发送
+	 * @param length      发送的字节数
+	 * @param contentType
+	 * @param listener    进度回调，可以为null
+	 */
+	public FileChannelEntity(Path file, long offset, long length, ContentType contentType, ProgressListener listener) {
+		this.file = file;
+		this.offset = offset;
+		this.length = length;
+		this.listener = listener;
+		if (contentType != null) {
+			setContentType(contentType.toString());
+		}
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return length;
+	}
+
+	public InputStream getContent() throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		channel.position(offset);
+		return new FilterInputStream(Channels.newInputStream(channel)) {
+			private long remaining = length;
+
+			@Override
+			public int read() throws IOException {
+				if (remaining <= 0) {
+					return -1;
+				}
+				int b = super.read();
+				if (b >= 0) {
+					remaining--;
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (remaining <= 0) {
+					return -1;
+				}
+				int n = super.read(b, off, (int) Math.min(len, remaining));
+				if (n > 0) {
+					remaining -= n;
+				}
+				return n;
+			}
+
+			@Override
+			public long skip(long n) throws IOException {
+				long skipped = super.skip(Math.min(n, remaining));
+				remaining -= skipped;
+				return skipped;
+			}
+
+			@Override
+			public int available() throws IOException {
+				return (int) Math.min(super.available(), remaining);
+			}
+		};
+	}
+
+	public void writeTo(OutputStream outstream) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			WritableByteChannel target = Channels.newChannel(outstream);
+			long total = offset + length;
+			long position = offset;
+			while (position < total) {
+				long n = channel.transferTo(position, Math.min(CHUNK_BYTES, total - position), target);
+				if (n <= 0) {
+					throw new IOException("file " + file + " was truncated at " + position + " while sending");
+				}
+				position += n;
+				if (listener != null) {
+					listener.onProgress(position, total);
+				}
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+}
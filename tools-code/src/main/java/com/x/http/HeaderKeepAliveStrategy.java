@@ -0,0 +1,29 @@
+package com.x.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * 连接保持策略：优先使用响应Keep-Alive头中的timeout，没有时使用默认时间，
+ * 避免复用已被对方按keep-alive超时关闭的连接
+ * 
+ * @author M
+ */
+public class HeaderKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+	private final long defaultKeepAliveMillis;
+
+	/**
+	 * @param defaultKeepAliveMillis 响应没有Keep-Alive头时保持的时间(毫秒)
+	 */
+	public HeaderKeepAliveStrategy(long defaultKeepAliveMillis) {
+		this.defaultKeepAliveMillis = defaultKeepAliveMillis;
+	}
+
+	public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+		long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+		return duration > 0 ? duration : defaultKeepAliveMillis;
+	}
+}
@@ -0,0 +1,231 @@
+package com.x.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * HttpClient连接池配置
+ * <p>
+ * 连接数(含单独设置的目标地址连接数)、超时和Keep-Alive同样用于{@link LocalHttpClient#getHttpAsyncClient()}的异步连接池，
+ * 两个连接池各自计数；其余连接清理和压缩配置只用于同步客户端
+ * 
+ * @author M
+ */
+public class HttpClientConfig {
+
+	/**
+	 * 连接池最大连接数
+	 */
+	private int maxTotal = 200;
+
+	/**
+	 * 每个路由(目标主机)默认的最大连接数，小于maxTotal，一个慢的目标地址不会占满整个连接池
+	 */
+	private int maxPerRoute = 50;
+
+	/**
+	 * 空闲超过该时间(毫秒)的连接由后台线程关闭，小于等于0时不清理空闲连接
+	 */
+	private long maxIdleMillis = 30 * 1000L;
+
+	/**
+	 * 连接最长存活时间(毫秒)，到期后不再复用，小于等于0时不限制
+	 */
+	private long timeToLiveMillis = 5 * 60 * 1000L;
+
+	/**
+	 * 响应没有Keep-Alive头时连接保持的时间(毫秒)，应小于对方服务的keep-alive超时
+	 */
+	private long defaultKeepAliveMillis = 20 * 1000L;
+
+	/**
+	 * 连接空闲超过该时间(毫秒)后再次使用前先检查是否已被对方关闭，小于0时不检查
+	 */
+	private int validateAfterInactivityMillis = 2000;
+
+	/**
+	 * 建立连接超时(毫秒)，小于0时使用系统默认(不超时)
+	 */
+	private int connectTimeoutMillis = 5 * 1000;
+
+	/**
+	 * 读取响应数据超时(毫秒)，即两次收到数据的最大间隔，小于0时使用系统默认(不超时)
+	 */
+	private int socketTimeoutMillis = 30 * 1000;
+
+	/**
+	 * 从连接池获取连接超时(毫秒)，小于0时一直等待
+	 */
+	private int connectionRequestTimeoutMillis = 5 * 1000;
+
+	/**
+	 * 是否发送Accept-Encoding并自动解压gzip/deflate响应
+	 */
+	private boolean contentCompression = true;
+
+	/**
+	 * 请求内容达到该字节数时压缩后发送，小于0时不压缩；只对确认支持压缩请求的服务开启
+	 */
+	private long requestCompressionMinBytes = -1;
+
+	/**
+	 * 请求内容的压缩格式，gzip或deflate
+	 */
+	private String requestCompressionEncoding = "gzip";
+
+	/**
+	 * 单独设置最大连接数的目标地址，key如https://api.example.com
+	 */
+	private Map<String, Integer> maxPerHost = new LinkedHashMap<String, Integer>();
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	public void setMaxTotal(int maxTotal) {
+		this.maxTotal = maxTotal;
+	}
+
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	public void setMaxPerRoute(int maxPerRoute) {
+		this.maxPerRoute = maxPerRoute;
+	}
+
+	public long getMaxIdleMillis() {
+		return maxIdleMillis;
+	}
+
+	public void setMaxIdleMillis(long maxIdleMillis) {
+		this.maxIdleMillis = maxIdleMillis;
+	}
+
+	public long getTimeToLiveMillis() {
+		return timeToLiveMillis;
+	}
+
+	public void setTimeToLiveMillis(long timeToLiveMillis) {
+		this.timeToLiveMillis = timeToLiveMillis;
+	}
+
+	public long getDefaultKeepAliveMillis() {
+		return defaultKeepAliveMillis;
+	}
+
+	public void setDefaultKeepAliveMillis(long defaultKeepAliveMillis) {
+		this.defaultKeepAliveMillis = defaultKeepAliveMillis;
+	}
+
+	public int getValidateAfterInactivityMillis() {
+		return validateAfterInactivityMillis;
+	}
+
+	public void setValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+		this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+	}
+
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	public int getSocketTimeoutMillis() {
+		return socketTimeoutMillis;
+	}
+
+	public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+		this.socketTimeoutMillis = socketTimeoutMillis;
+	}
+
+	public int getConnectionRequestTimeoutMillis() {
+		return connectionRequestTimeoutMillis;
+	}
+
+	public void setConnectionRequestTimeoutMillis(int connectionRequestTimeoutMillis) {
+		this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+	}
+
+	public boolean isContentCompression() {
+		return contentCompression;
+	}
+
+	public void setContentCompression(boolean contentCompression) {
+		this.contentCompression = contentCompression;
+	}
+
+	public long getRequestCompressionMinBytes() {
+		return requestCompressionMinBytes;
+	}
+
+	public void setRequestCompressionMinBytes(long requestCompressionMinBytes) {
+		this.requestCompressionMinBytes = requestCompressionMinBytes;
+	}
+
+	public String getRequestCompressionEncoding() {
+		return requestCompressionEncoding;
+	}
+
+	public void setRequestCompressionEncoding(String requestCompressionEncoding) {
+		this.requestCompressionEncoding = requestCompressionEncoding;
+	}
+
+	public Map<String, Integer> getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	public void setMaxPerHost(Map<String, Integer> maxPerHost) {
+		this.maxPerHost = maxPerHost;
+	}
+
+	/**
+	 * 单独设置某个目标地址的最大连接数，避免一个慢服务占满整个连接池
+	 * 
+	 * @param host 目标地址，如https://api.example.com或api.example.com:8080(默认http)
+	 * @param max
+	 * @return
+	 */
+	public HttpClientConfig setMaxPerHost(String host, int max) {
+		maxPerHost.put(host, max);
+		return this;
+	}
+
+	/**
+	 * 按配置值比较，各处分别创建的相同配置视为同一配置
+	 */
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof HttpClientConfig)) {
+			return false;
+		}
+		HttpClientConfig other = (HttpClientConfig) o;
+		return maxTotal == other.maxTotal
+				&& maxPerRoute == other.maxPerRoute
+				&& maxIdleMillis == other.maxIdleMillis
+				&& timeToLiveMillis == other.timeToLiveMillis
+				&& defaultKeepAliveMillis == other.defaultKeepAliveMillis
+				&& validateAfterInactivityMillis == other.validateAfterInactivityMillis
+				&& connectTimeoutMillis == other.connectTimeoutMillis
+				&& socketTimeoutMillis == other.socketTimeoutMillis
+				&& connectionRequestTimeoutMillis == other.connectionRequestTimeoutMillis
+				&& contentCompression == other.contentCompression
+				&& requestCompressionMinBytes == other.requestCompressionMinBytes
+				&& Objects.equals(requestCompressionEncoding, other.requestCompressionEncoding)
+				&& Objects.equals(maxPerHost, other.maxPerHost);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(maxTotal, maxPerRoute, maxIdleMillis, timeToLiveMillis, defaultKeepAliveMillis, validateAfterInactivityMillis,
+				connectTimeoutMillis, socketTimeoutMillis, connectionRequestTimeoutMillis, contentCompression, requestCompressionMinBytes,
+				requestCompressionEncoding, maxPerHost);
+	}
+}
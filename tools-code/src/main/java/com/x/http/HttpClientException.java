@@ -0,0 +1,17 @@
+package com.x.http;
+
+/**
+ * 请求失败：连接、读写出错或被拒绝执行
+ */
+public class HttpClientException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public HttpClientException(String message) {
+		super(message);
+	}
+
+	public HttpClientException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -1,30 +1,36 @@
 package com.x.http;
 
+import com.x.http.compress.RequestCompressionInterceptor;
+import com.x.http.resilience.ResilientHttpClient;
+import org.apache.http.HttpHost;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.conn.ssl.SSLContexts;
-import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
-import org.apache.http.conn.ssl.TrustStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
 
-import javax.net.ssl.SSLContext;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.security.KeyManagementException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * HttpClient工厂类
@@ -33,61 +39,150 @@ import java.security.cert.X509Certificate;
  */
 public class HttpClientFactory {
 
+	/**
+	 * 与HttpClient默认一样重试3次(NoHttpResponseException等)；
+	 * 经过{@link ResilientHttpClient}的请求不重试，由其按策略退避重试，避免一次调用放大成(maxRetries+1)*4次请求
+	 */
+	private static final HttpRequestRetryHandler RETRY_HANDLER = new HttpRequestRetryHandler() {
+		public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+			if (context != null && Boolean.TRUE.equals(context.getAttribute(ResilientHttpClient.RETRY_HANDLED))) {
+				return false;
+			}
+			return DefaultHttpRequestRetryHandler.INSTANCE.retryRequest(exception, executionCount, context);
+		}
+	};
+
 	/**
 	 * SSL正常方式获取
 	 * 
 	 * @return
 	 */
 	public static HttpClient createHttpClient() {
-		try {
-			SSLContext sslContext = SSLContexts.custom().useSSL().build();
-			SSLConnectionSocketFactory sf = new SSLConnectionSocketFactory(sslContext, SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-			return HttpClientBuilder.create().setSSLSocketFactory(sf).build();
-		} catch (KeyManagementException e) {
-			e.printStackTrace();
-		} catch (NoSuchAlgorithmException e) {
-			e.printStackTrace();
-		}
-		return null;
+		return HttpClientBuilder.create()
+				.setSSLSocketFactory(TlsContexts.systemAllowAllHostnames())
+				.setDefaultRequestConfig(requestConfig(new HttpClientConfig()))
+				.setRetryHandler(RETRY_HANDLER)
+				.build();
 	}
 
 	/**
 	 * 请求数据，支持https
 	 * 
-	 * @param maxTotal
+	 * @param maxTotal 每个路由的最大连接数取默认值与maxTotal中较小的
 	 * @return
 	 */
 	public static CloseableHttpClient createHttpClient(int maxTotal) {
+		HttpClientConfig config = new HttpClientConfig();
+		config.setMaxTotal(maxTotal);
+		config.setMaxPerRoute(Math.min(config.getMaxPerRoute(), maxTotal));
+		return createHttpClient(config);
+	}
+
+	/**
+	 * 按配置创建连接池客户端，支持https(信任任何链接)
+	 * <p>
+	 * 后台线程按配置清理空闲和过期连接，随客户端close一起停止
+	 * 
+	 * @param config
+	 * @return
+	 */
+	public static CloseableHttpClient createHttpClient(HttpClientConfig config) {
+		return createHttpClient(createConnectionManager(config), config);
+	}
+
+	/**
+	 * 按配置创建记录获取连接等待时间的连接管理器，支持https(信任任何链接)
+	 * 
+	 * @param config
+	 * @return
+	 */
+	public static InstrumentedConnectionManager createConnectionManager(HttpClientConfig config) {
+		return createConnectionManager(trustAllRegistry(), config);
+	}
+
+	/**
+	 * 使用指定的连接管理器创建客户端，客户端close时连接管理器一起关闭
+	 * 
+	 * @param connManager
+	 * @param config
+	 * @return
+	 */
+	public static CloseableHttpClient createHttpClient(PoolingHttpClientConnectionManager connManager, HttpClientConfig config) {
+		return build(connManager, config);
+	}
+
+	/**
+	 * 信任任何链接的套接字工厂注册表
+	 */
+	private static Registry<ConnectionSocketFactory> trustAllRegistry() {
 		RegistryBuilder<ConnectionSocketFactory> registryBuilder = RegistryBuilder.<ConnectionSocketFactory> create();
 		ConnectionSocketFactory plainSF = new PlainConnectionSocketFactory();
 		registryBuilder.register("http", plainSF);
-		// 指定信任密钥存储对象和连接套接字工厂
-		try {
-			KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
-			// 信任任何链接
-			TrustStrategy anyTrustStrategy = new TrustStrategy() {
-				public boolean isTrusted(X509Certificate[] x509Certificates, String s) throws CertificateException {
-					return true;
-				}
-			};
-			SSLContext sslContext = SSLContexts.custom().useTLS().loadTrustMaterial(trustStore, anyTrustStrategy).build();
-			LayeredConnectionSocketFactory sslSF = new SSLConnectionSocketFactory(sslContext, SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-			registryBuilder.register("https", sslSF);
-		} catch (KeyStoreException e) {
-			throw new RuntimeException(e);
-		} catch (KeyManagementException e) {
-			throw new RuntimeException(e);
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(e);
+		// 同一信任配置共享SSLContext，新的连接池也能恢复已缓存的会话
+		registryBuilder.register("https", TlsContexts.trustAll());
+		return registryBuilder.build();
+	}
+
+	/**
+	 * 按配置创建连接管理器：连接存活时间、连接数、单独设置的目标地址连接数、空闲后复用前的检查
+	 */
+	private static InstrumentedConnectionManager createConnectionManager(Registry<ConnectionSocketFactory> registry, HttpClientConfig config) {
+		InstrumentedConnectionManager connManager = new InstrumentedConnectionManager(registry,
+				config.getTimeToLiveMillis() > 0 ? config.getTimeToLiveMillis() : -1, TimeUnit.MILLISECONDS);
+		connManager.setMaxTotal(config.getMaxTotal());
+		connManager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+		for (Map.Entry<String, Integer> entry : config.getMaxPerHost().entrySet()) {
+			connManager.setMaxPerRoute(toRoute(entry.getKey()), entry.getValue());
 		}
-		Registry<ConnectionSocketFactory> registry = registryBuilder.build();
-
-		// 设置连接管理器
-		PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager(registry);
-		connManager.setMaxTotal(maxTotal);
-		connManager.setDefaultMaxPerRoute(connManager.getMaxTotal());
-		// 构建客户端
-		return HttpClientBuilder.create().setConnectionManager(connManager).build();
+		connManager.setValidateAfterInactivity(config.getValidateAfterInactivityMillis());
+		return connManager;
+	}
+
+	/**
+	 * 与默认路由规则一致：没有端口时使用协议默认端口，https为安全路由
+	 */
+	private static HttpRoute toRoute(String host) {
+		HttpHost target = HttpHost.create(host);
+		int port = target.getPort();
+		if (port < 0) {
+			port = "https".equalsIgnoreCase(target.getSchemeName()) ? 443 : 80;
+		}
+		target = new HttpHost(target.getHostName(), port, target.getSchemeName());
+		return new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+	}
+
+	/**
+	 * 构建客户端：按配置超时，按Keep-Alive头保持连接，后台清理过期和空闲连接，压缩请求和解压响应
+	 */
+	private static CloseableHttpClient build(PoolingHttpClientConnectionManager connManager, HttpClientConfig config) {
+		HttpClientBuilder builder = HttpClientBuilder.create()
+				.setConnectionManager(connManager)
+				.setDefaultRequestConfig(requestConfig(config))
+				.setRetryHandler(RETRY_HANDLER)
+				.setKeepAliveStrategy(new HeaderKeepAliveStrategy(config.getDefaultKeepAliveMillis()))
+				.evictExpiredConnections();
+		if (config.getMaxIdleMillis() > 0) {
+			builder.evictIdleConnections(config.getMaxIdleMillis(), TimeUnit.MILLISECONDS);
+		}
+		if (!config.isContentCompression()) {
+			builder.disableContentCompression();
+		}
+		if (config.getRequestCompressionMinBytes() >= 0) {
+			// 要在设置Content-Length的拦截器之前替换请求内容
+			builder.addInterceptorFirst(new RequestCompressionInterceptor(config.getRequestCompressionMinBytes(), config.getRequestCompressionEncoding()));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * 按配置的连接、读取和获取连接超时
+	 */
+	private static RequestConfig requestConfig(HttpClientConfig config) {
+		return RequestConfig.custom()
+				.setConnectTimeout(config.getConnectTimeoutMillis())
+				.setSocketTimeout(config.getSocketTimeoutMillis())
+				.setConnectionRequestTimeout(config.getConnectionRequestTimeoutMillis())
+				.build();
 	}
 
 	/**
@@ -99,39 +194,13 @@ public class HttpClientFactory {
 	 */
 	public static HttpClient createHttpClient(String keystorePath, String password) {
 		try {
-			KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
-			FileInputStream in = new FileInputStream(new File(keystorePath));
-			try {
-				keystore.load(in, password.toCharArray());
-			} catch (NoSuchAlgorithmException e) {
-				e.printStackTrace();
-			} catch (CertificateException e) {
-				e.printStackTrace();
-			} catch (IOException e) {
-				e.printStackTrace();
-			} finally {
-				try {
-					in.close();
-				} catch (IOException e) {
-				}
-			}
-			// 相信自己的CA和所有自签名的证书
-			SSLContext sslcontext = SSLContexts.custom().loadTrustMaterial(keystore, new TrustSelfSignedStrategy()).build();
-			// 只允许使用TLSv1协议
-			SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(sslcontext, new String[] { "TLSv1" }, null, SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
-
-			return HttpClientBuilder.create().setSSLSocketFactory(sslsf).build();
-		} catch (KeyStoreException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (KeyManagementException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (NoSuchAlgorithmException e) {
-			// TODO Auto-generated catch block
+			// 相信自己的CA和所有自签名的证书，只允许TLSv1.2及以上
+			return HttpClientBuilder.create()
+					.setSSLSocketFactory(TlsContexts.keystore(keystorePath, password))
+					.setDefaultRequestConfig(requestConfig(new HttpClientConfig()))
+					.setRetryHandler(RETRY_HANDLER)
+					.build();
+		} catch (IllegalStateException e) {
 			e.printStackTrace();
 		}
 		return null;
@@ -145,19 +214,77 @@ public class HttpClientFactory {
 	 * @return
 	 */
 	public static HttpClient createHttpClient(int maxTotal, int maxPerRoute) {
+		HttpClientConfig config = new HttpClientConfig();
+		config.setMaxTotal(maxTotal);
+		config.setMaxPerRoute(maxPerRoute);
+		Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", TlsContexts.system())
+				.build();
+		return build(createConnectionManager(registry, config), config);
+	}
+
+	/**
+	 * 非阻塞IO的异步客户端，使用独立的连接池，支持https(信任任何链接)，与{@link #createHttpClient(HttpClientConfig)}一致
+	 * 
+	 * @param maxTotal
+	 * @param maxPerRoute
+	 * @return 已启动的客户端，不再使用时需要close
+	 */
+	public static CloseableHttpAsyncClient createHttpAsyncClient(int maxTotal, int maxPerRoute) {
+		HttpClientConfig config = new HttpClientConfig();
+		config.setMaxTotal(maxTotal);
+		config.setMaxPerRoute(maxPerRoute);
+		return createHttpAsyncClient(config, TlsContexts.trustAllAsync());
+	}
+
+	/**
+	 * 按配置创建非阻塞IO的异步客户端，使用独立的连接池：
+	 * 连接数(每个路由不超过maxTotal)、单独设置的目标地址连接数、超时和Keep-Alive与同步客户端一致
+	 * 
+	 * @param config
+	 * @param sslStrategy https的证书和主机名校验，应与同一客户端的同步请求一致，如{@link TlsContexts#keystoreAsync(String, String)}
+	 * @return 已启动的客户端，不再使用时需要close
+	 */
+	public static CloseableHttpAsyncClient createHttpAsyncClient(HttpClientConfig config, SSLIOSessionStrategy sslStrategy) {
 		try {
-			SSLContext sslContext = SSLContexts.custom().useSSL().build();
-			SSLConnectionSocketFactory sf = new SSLConnectionSocketFactory(sslContext, SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-			PoolingHttpClientConnectionManager poolingHttpClientConnectionManager = new PoolingHttpClientConnectionManager();
-			poolingHttpClientConnectionManager.setMaxTotal(maxTotal);
-			poolingHttpClientConnectionManager.setDefaultMaxPerRoute(maxPerRoute);
-			return HttpClientBuilder.create().setConnectionManager(poolingHttpClientConnectionManager).setSSLSocketFactory(sf).build();
-		} catch (KeyManagementException e) {
-			e.printStackTrace();
-		} catch (NoSuchAlgorithmException e) {
-			e.printStackTrace();
+			Registry<SchemeIOSessionStrategy> registry = RegistryBuilder.<SchemeIOSessionStrategy> create()
+					.register("http", NoopIOSessionStrategy.INSTANCE)
+					.register("https", sslStrategy)
+					.build();
+			// I/O线程数与CPU核数一致，守护线程不阻止JVM退出
+			IOReactorConfig reactorConfig = IOReactorConfig.custom()
+					.setIoThreadCount(Runtime.getRuntime().availableProcessors())
+					.build();
+			DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(reactorConfig, daemonThreadFactory("http-async-io"));
+			PoolingNHttpClientConnectionManager connManager = new PoolingNHttpClientConnectionManager(ioReactor, registry);
+			connManager.setMaxTotal(config.getMaxTotal());
+			connManager.setDefaultMaxPerRoute(Math.min(config.getMaxPerRoute(), config.getMaxTotal()));
+			for (Map.Entry<String, Integer> entry : config.getMaxPerHost().entrySet()) {
+				connManager.setMaxPerRoute(toRoute(entry.getKey()), entry.getValue());
+			}
+			CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+					.setConnectionManager(connManager)
+					.setDefaultRequestConfig(requestConfig(config))
+					.setKeepAliveStrategy(new HeaderKeepAliveStrategy(config.getDefaultKeepAliveMillis()))
+					.setThreadFactory(daemonThreadFactory("http-async-dispatcher"))
+					.build();
+			client.start();
+			return client;
+		} catch (IOReactorException e) {
+			throw new RuntimeException(e);
 		}
-		return null;
+	}
+
+	private static ThreadFactory daemonThreadFactory(final String prefix) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
 	}
 
 }
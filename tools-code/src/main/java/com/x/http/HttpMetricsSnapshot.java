@@ -0,0 +1,65 @@
+package com.x.http;
+
+import com.x.http.metrics.HttpRouteStats;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求统计和连接池统计的快照
+ *
+ * @author M
+ */
+public class HttpMetricsSnapshot {
+
+	/**
+	 * 按目标地址和路径模板的请求统计，没有开启统计时为空
+	 */
+	private final List<HttpRouteStats> routes;
+
+	/**
+	 * 按目标地址的连接池统计，包括获取连接的等待时间
+	 */
+	private final Map<String, HttpPoolStats> pools;
+
+	/**
+	 * 整个连接池的统计，可能为null
+	 */
+	private final HttpPoolStats totalPool;
+
+	public HttpMetricsSnapshot(List<HttpRouteStats> routes, Map<String, HttpPoolStats> pools, HttpPoolStats totalPool) {
+		this.routes = routes;
+		this.pools = pools;
+		this.totalPool = totalPool;
+	}
+
+	public List<HttpRouteStats> getRoutes() {
+		return routes;
+	}
+
+	public Map<String, HttpPoolStats> getPools() {
+		return pools;
+	}
+
+	public HttpPoolStats getTotalPool() {
+		return totalPool;
+	}
+
+	/**
+	 * 每行一条统计，用于日志输出
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("http metrics");
+		for (HttpRouteStats route : routes) {
+			builder.append("\n  ").append(route);
+		}
+		if (totalPool != null) {
+			builder.append("\n  pool ").append(totalPool);
+		}
+		for (HttpPoolStats pool : pools.values()) {
+			builder.append("\n  pool ").append(pool);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,90 @@
+package com.x.http;
+
+import com.x.http.metrics.LatencyHistogram;
+
+/**
+ * 连接池统计快照
+ *
+ * @author M
+ */
+public class HttpPoolStats {
+
+	/**
+	 * 目标地址，整个连接池为*
+	 */
+	private final String route;
+
+	/**
+	 * 正在使用的连接数
+	 */
+	private final int leased;
+
+	/**
+	 * 空闲可复用的连接数
+	 */
+	private final int available;
+
+	/**
+	 * 等待获取连接的请求数，持续大于0说明连接数不够
+	 */
+	private final int pending;
+
+	/**
+	 * 最大连接数
+	 */
+	private final int max;
+
+	/**
+	 * 获取连接的等待时间(微秒)
+	 */
+	private final LatencyHistogram.Snapshot leaseWait;
+
+	/**
+	 * 新建的连接数，相对请求数偏高说明连接没有被复用
+	 */
+	private final long connects;
+
+	public HttpPoolStats(String route, int leased, int available, int pending, int max, LatencyHistogram.Snapshot leaseWait, long connects) {
+		this.route = route;
+		this.leased = leased;
+		this.available = available;
+		this.pending = pending;
+		this.max = max;
+		this.leaseWait = leaseWait;
+		this.connects = connects;
+	}
+
+	public String getRoute() {
+		return route;
+	}
+
+	public int getLeased() {
+		return leased;
+	}
+
+	public int getAvailable() {
+		return available;
+	}
+
+	public int getPending() {
+		return pending;
+	}
+
+	public int getMax() {
+		return max;
+	}
+
+	public LatencyHistogram.Snapshot getLeaseWait() {
+		return leaseWait;
+	}
+
+	public long getConnects() {
+		return connects;
+	}
+
+	@Override
+	public String toString() {
+		return route + " [leased=" + leased + ", available=" + available + ", pending=" + pending + ", max=" + max
+				+ ", connects=" + connects + ", leaseWait(us): " + leaseWait + "]";
+	}
+}
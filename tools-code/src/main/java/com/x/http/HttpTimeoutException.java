@@ -0,0 +1,13 @@
+package com.x.http;
+
+/**
+ * 请求超时：建立连接、读取响应或从连接池获取连接超时
+ */
+public class HttpTimeoutException extends HttpClientException {
+
+	private static final long serialVersionUID = 1L;
+
+	public HttpTimeoutException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,117 @@
+package com.x.http;
+
+import com.x.http.metrics.LatencyHistogram;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录从连接池获取连接等待时间和新建连接数的连接管理器
+ * <p>
+ * 等待时间按路由分别记录(微秒)，连接池不够用时等待时间先于请求超时上升；
+ * 新建连接数相对请求数偏高说明连接没有被复用(空闲清理过早、服务端关闭Keep-Alive等)
+ *
+ * @author M
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+	private final LatencyHistogram totalLeaseWait = new LatencyHistogram();
+
+	private final ConcurrentMap<HttpRoute, LatencyHistogram> leaseWaits = new ConcurrentHashMap<HttpRoute, LatencyHistogram>();
+
+	private final LongAdder totalConnects = new LongAdder();
+
+	private final ConcurrentMap<HttpRoute, LongAdder> connects = new ConcurrentHashMap<HttpRoute, LongAdder>();
+
+	public InstrumentedConnectionManager(Registry<ConnectionSocketFactory> registry, long timeToLive, TimeUnit unit) {
+		super(registry, null, null, null, timeToLive, unit);
+	}
+
+	@Override
+	public ConnectionRequest requestConnection(final HttpRoute route, Object state) {
+		final ConnectionRequest request = super.requestConnection(route, state);
+		return new ConnectionRequest() {
+			public HttpClientConnection get(long timeout, TimeUnit unit)
+					throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+				long start = System.nanoTime();
+				try {
+					return request.get(timeout, unit);
+				} finally {
+					recordLeaseWait(route, System.nanoTime() - start);
+				}
+			}
+
+			public boolean cancel() {
+				return request.cancel();
+			}
+		};
+	}
+
+	@Override
+	public void connect(HttpClientConnection managedConn, HttpRoute route, int connectTimeout, HttpContext context) throws IOException {
+		super.connect(managedConn, route, connectTimeout, context);
+		totalConnects.increment();
+		LongAdder count = connects.get(route);
+		if (count == null) {
+			LongAdder created = new LongAdder();
+			count = connects.putIfAbsent(route, created);
+			if (count == null) {
+				count = created;
+			}
+		}
+		count.increment();
+	}
+
+	private void recordLeaseWait(HttpRoute route, long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		totalLeaseWait.record(micros);
+		LatencyHistogram histogram = leaseWaits.get(route);
+		if (histogram == null) {
+			LatencyHistogram created = new LatencyHistogram();
+			histogram = leaseWaits.putIfAbsent(route, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		histogram.record(micros);
+	}
+
+	/**
+	 * @return 整个连接池的统计
+	 */
+	public HttpPoolStats getTotalPoolStats() {
+		return toPoolStats("*", getTotalStats(), totalLeaseWait, totalConnects);
+	}
+
+	/**
+	 * @return 按路由的统计，key为目标地址，如https://api.example.com:443
+	 */
+	public Map<String, HttpPoolStats> getRoutePoolStats() {
+		Map<String, HttpPoolStats> stats = new LinkedHashMap<String, HttpPoolStats>();
+		for (HttpRoute route : getRoutes()) {
+			String name = route.getTargetHost().toURI();
+			stats.put(name, toPoolStats(name, getStats(route), leaseWaits.get(route), connects.get(route)));
+		}
+		return stats;
+	}
+
+	private static HttpPoolStats toPoolStats(String route, PoolStats stats, LatencyHistogram leaseWait, LongAdder connects) {
+		return new HttpPoolStats(route, stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax(),
+				leaseWait == null ? new LatencyHistogram().snapshot() : leaseWait.snapshot(), connects == null ? 0 : connects.sum());
+	}
+}
@@ -1,17 +1,29 @@
 package com.x.http;
 
+import com.alibaba.fastjson.JSONReader;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.entity.ContentType;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 public class JsonResponseHandler{
 
+	/**
+	 * DEBUG日志中最多记录的响应字节数
+	 */
+	private static final int LOG_PREFIX_BYTES = 1024;
+
 	public static <T> ResponseHandler<T> createResponseHandler(final Class<T> clazz){
 		return new ResponseHandler<T>() {
 			public T handleResponse(HttpResponse response)
@@ -29,4 +41,87 @@ public class JsonResponseHandler{
 			}
 		};
 	}
+
+	/**
+	 * 直接从响应流解析JSON，不把响应内容读成字符串，适合较大的响应
+	 * <p>
+	 * 只在DEBUG级别记录响应的前{@value #LOG_PREFIX_BYTES}个字节
+	 * 
+	 * @param clazz
+	 * @return
+	 */
+	public static <T> ResponseHandler<T> createStreamingResponseHandler(final Class<T> clazz){
+		return new ResponseHandler<T>() {
+			public T handleResponse(HttpResponse response)
+					throws ClientProtocolException, IOException {
+				int status = response.getStatusLine().getStatusCode();
+				if (status < 200 || status >= 300) {
+					EntityUtils.consumeQuietly(response.getEntity());
+					throw new ClientProtocolException("Unexpected response status : " + status);
+				}
+				HttpEntity entity = response.getEntity();
+				if (entity == null) {
+					return null;
+				}
+				Charset charset = ContentType.getOrDefault(entity).getCharset();
+				if (charset == null) {
+					charset = StandardCharsets.UTF_8;
+				}
+				Logger logger = LoggerFactory.getLogger(JsonResponseHandler.class);
+				InputStream in = entity.getContent();
+				PrefixCapturingInputStream prefix = null;
+				if (logger.isDebugEnabled()) {
+					in = prefix = new PrefixCapturingInputStream(in, LOG_PREFIX_BYTES);
+				}
+				JSONReader reader = new JSONReader(new InputStreamReader(in, charset));
+				try {
+					return reader.readObject(clazz);
+				} finally {
+					reader.close();
+					if (prefix != null) {
+						logger.debug("[DEBUG]: 响应的数据为(前{}字节):{}", LOG_PREFIX_BYTES, prefix.getPrefix(charset));
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * 记录读过的前若干字节，用于日志
+	 */
+	private static class PrefixCapturingInputStream extends FilterInputStream {
+
+		private final byte[] prefix;
+
+		private int length;
+
+		PrefixCapturingInputStream(InputStream in, int limit) {
+			super(in);
+			this.prefix = new byte[limit];
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0 && length < prefix.length) {
+				prefix[length++] = (byte) b;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0 && length < prefix.length) {
+				int copy = Math.min(n, prefix.length - length);
+				System.arraycopy(b, off, prefix, length, copy);
+				length += copy;
+			}
+			return n;
+		}
+
+		String getPrefix(Charset charset) {
+			return new String(prefix, 0, length, charset);
+		}
+	}
 }
@@ -1,25 +1,110 @@
 package com.x.http;
 
+import com.x.http.cache.CachingHttpClient;
+import com.x.http.cache.CoalescingHttpClient;
+import com.x.http.cache.HttpResponseCache;
+import com.x.http.metrics.HttpRouteStats;
+import com.x.http.metrics.MetricsHttpClient;
+import com.x.http.resilience.HedgingHttpClient;
+import com.x.http.resilience.HedgingPolicy;
+import com.x.http.resilience.RateLimitPolicy;
+import com.x.http.resilience.RateLimitingHttpClient;
+import com.x.http.resilience.ResiliencePolicy;
+import com.x.http.resilience.ResilientHttpClient;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.ClientProtocolException;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class LocalHttpClient {
 	private static Logger log = LoggerFactory.getLogger(LocalHttpClient.class);
+
+	/**
+	 * 下载时每次写入文件的字节数，也是进度回调的间隔
+	 */
+	private static final long DOWNLOAD_CHUNK_BYTES = 256 * 1024;
+
+	/**
+	 * 状态码为200时返回响应内容，否则返回null
+	 */
+	private static final ResponseHandler<String> STRING_RESPONSE_HANDLER = new ResponseHandler<String>() {
+		public String handleResponse(HttpResponse response) throws IOException {
+			if (response.getStatusLine().getStatusCode() != 200) {
+				return null;
+			}
+			HttpEntity entity = response.getEntity();
+			return entity == null ? null : EntityUtils.toString(entity);
+		}
+	};
 	
-	private static LocalHttpClient localHttpClient = null;
-	private HttpClient httpClient;
+	/**
+	 * 按名称注册的客户端，每个有独立的连接池和配置
+	 */
+	private static final ConcurrentMap<String, LocalHttpClient> NAMED_CLIENTS = new ConcurrentHashMap<String, LocalHttpClient>();
+
+	private static volatile LocalHttpClient localHttpClient = null;
+	private volatile HttpClient httpClient;
+	private volatile CloseableHttpAsyncClient httpAsyncClient;
+	private String name;
+	private final AtomicBoolean closed = new AtomicBoolean();
+	private HttpClientConfig config;
+	/**
+	 * 异步客户端https的证书和主机名校验，与同步客户端一致
+	 */
+	private Supplier<SSLIOSessionStrategy> asyncSslStrategy = TlsContexts::systemAllowAllHostnamesAsync;
+	private InstrumentedConnectionManager connectionManager;
+	private HttpResponseCache responseCache;
+	private CoalescingHttpClient coalescingHttpClient;
+	private ResilientHttpClient resilientHttpClient;
+	private HedgingHttpClient hedgingHttpClient;
+	private RateLimitingHttpClient rateLimitingHttpClient;
+	private MetricsHttpClient metricsHttpClient;
+	private ScheduledExecutorService metricsLogger;
 
 	private static int maxTotal = 200;
 	private static String keystoryPath;
@@ -29,52 +114,462 @@ public class LocalHttpClient {
 		
 	};
 
-	public void init(int maxTotal, String keystoryPath, String keystoryPassword) {
+	/**
+	 * 设置默认单例的连接数和证书，需要在第一次调用getInstance之前调用
+	 * 
+	 * @param maxTotal
+	 * @param keystoryPath     证书库路径，为空时信任任何链接
+	 * @param keystoryPassword
+	 * @throws IllegalStateException 单例已经创建
+	 */
+	public static synchronized void init(int maxTotal, String keystoryPath, String keystoryPassword) {
+		if (localHttpClient != null) {
+			throw new IllegalStateException("LocalHttpClient instance already created, init must be called before getInstance");
+		}
 		LocalHttpClient.maxTotal = maxTotal;
 		LocalHttpClient.keystoryPath = keystoryPath;
 		LocalHttpClient.keystoryPassword = keystoryPassword;
 	}
 
+	/**
+	 * 默认单例，首次调用时按init的设置创建；多个线程同时首次调用只创建一个
+	 */
 	public static LocalHttpClient getInstance() {
-		if (null != localHttpClient) {
+		LocalHttpClient instance = localHttpClient;
+		if (instance != null) {
+			return instance;
+		}
+		synchronized (LocalHttpClient.class) {
+			if (localHttpClient == null) {
+				instance = new LocalHttpClient();
+				if (null != keystoryPath && !"".equals(keystoryPath)) {
+					instance.httpClient = HttpClientFactory.createHttpClient(keystoryPath, keystoryPassword);
+					final String path = keystoryPath;
+					final String password = keystoryPassword;
+					instance.asyncSslStrategy = () -> TlsContexts.keystoreAsync(path, password);
+				} else if (maxTotal > 0) {
+					HttpClientConfig config = new HttpClientConfig();
+					config.setMaxTotal(maxTotal);
+					config.setMaxPerRoute(Math.min(config.getMaxPerRoute(), maxTotal));
+					instance.setUp(config);
+				} else {
+					instance.httpClient = HttpClientFactory.createHttpClient();
+				}
+				localHttpClient = instance;
+			}
 			return localHttpClient;
 		}
-		localHttpClient = new LocalHttpClient();
-		if (null != keystoryPath && "".equals(keystoryPath)) {
-			localHttpClient.httpClient = HttpClientFactory.createHttpClient(keystoryPath, keystoryPassword);
-		} else if (maxTotal > 0) {
-			localHttpClient.httpClient = HttpClientFactory.createHttpClient(maxTotal);
-		} else {
-			localHttpClient.httpClient = HttpClientFactory.createHttpClient();
+	}
+
+	/**
+	 * 按配置创建独立的客户端(不是单例)，可以设置每个目标地址的连接数和超时
+	 * 
+	 * @param config
+	 * @return
+	 */
+	public static LocalHttpClient create(HttpClientConfig config) {
+		LocalHttpClient client = new LocalHttpClient();
+		client.setUp(config);
+		return client;
+	}
+
+	/**
+	 * 按名称获取客户端，不存在时按默认配置创建
+	 * 
+	 * @param name 如payment，通常一个合作方一个
+	 * @return
+	 */
+	public static LocalHttpClient named(String name) {
+		LocalHttpClient client = NAMED_CLIENTS.get(name);
+		return client != null ? client : getOrCreate(name, new HttpClientConfig());
+	}
+
+	/**
+	 * 按名称获取客户端，不存在时按配置创建；同一名称并发调用只创建一个，其他线程拿到的是创建完成的客户端。
+	 * 配置按值比较，各处分别创建的相同配置拿到同一个客户端
+	 * 
+	 * @param name
+	 * @param config
+	 * @return
+	 * @throws IllegalStateException 该名称的客户端已按不同的配置创建
+	 */
+	public static LocalHttpClient named(String name, HttpClientConfig config) {
+		LocalHttpClient client = getOrCreate(name, config);
+		if (!client.config.equals(config)) {
+			throw new IllegalStateException("http client [" + name + "] already created with another config");
 		}
-		return localHttpClient;
+		return client;
+	}
+
+	private static LocalHttpClient getOrCreate(final String name, final HttpClientConfig config) {
+		return NAMED_CLIENTS.computeIfAbsent(name, new Function<String, LocalHttpClient>() {
+			public LocalHttpClient apply(String key) {
+				LocalHttpClient created = create(config);
+				created.name = name;
+				log.info("http client [{}] created, maxTotal={}, maxPerRoute={}", name, config.getMaxTotal(), config.getMaxPerRoute());
+				return created;
+			}
+		});
+	}
+
+	/**
+	 * @return 已创建且没有关闭的命名客户端
+	 */
+	public static Map<String, LocalHttpClient> getNamedClients() {
+		return Collections.unmodifiableMap(new TreeMap<String, LocalHttpClient>(NAMED_CLIENTS));
 	}
 
+	/**
+	 * 关闭所有命名客户端和默认单例，用于应用停止
+	 */
+	public static void closeAll() {
+		for (LocalHttpClient client : NAMED_CLIENTS.values()) {
+			client.close();
+		}
+		LocalHttpClient instance = localHttpClient;
+		if (instance != null) {
+			instance.close();
+		}
+	}
+
+	/**
+	 * 预先创建异步客户端，避免第一个异步请求时才创建I/O线程和连接池
+	 * 
+	 * @return
+	 * @throws IllegalStateException 客户端已关闭
+	 */
+	public LocalHttpClient start() {
+		if (closed.get()) {
+			throw new IllegalStateException("http client " + (name == null ? "" : "[" + name + "] ") + "is closed");
+		}
+		getHttpAsyncClient();
+		return this;
+	}
+
+	/**
+	 * @return 命名客户端的名称，其他为null
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public boolean isClosed() {
+		return closed.get();
+	}
+
+	private void setUp(HttpClientConfig config) {
+		this.config = config;
+		this.asyncSslStrategy = TlsContexts::trustAllAsync;
+		this.connectionManager = HttpClientFactory.createConnectionManager(config);
+		this.httpClient = HttpClientFactory.createHttpClient(connectionManager, config);
+	}
+
+	/**
+	 * 开启GET响应缓存，同步请求(execute、exe)经过缓存，异步请求不经过
+	 * 
+	 * @param maxBytes 缓存总字节数，超出时淘汰最久未使用的响应
+	 * @return 缓存，可查看命中、未命中和重新验证次数
+	 */
+	public synchronized HttpResponseCache enableCache(long maxBytes) {
+		if (responseCache == null) {
+			HttpResponseCache cache = new HttpResponseCache(maxBytes);
+			httpClient = new CachingHttpClient(closeableHttpClient(), cache);
+			responseCache = cache;
+		}
+		return responseCache;
+	}
+
+	/**
+	 * @return 响应缓存，没有开启时返回null
+	 */
+	public HttpResponseCache getResponseCache() {
+		return responseCache;
+	}
+
+	/**
+	 * 开启请求合并：方法、URI和常用请求头相同的并发GET请求只发出一次，共享同一个响应
+	 * 
+	 * @return 可查看合并次数
+	 */
+	public CoalescingHttpClient enableCoalescing() {
+		return enableCoalescing(null);
+	}
+
+	/**
+	 * 开启请求合并，同步请求(execute、exe)经过合并，异步请求不经过
+	 * 
+	 * @param keyFunction 计算请求的key，key相同的并发请求合并，返回null的请求不合并；为null时使用默认规则
+	 * @return 可查看合并次数
+	 */
+	public synchronized CoalescingHttpClient enableCoalescing(Function<HttpRequest, String> keyFunction) {
+		if (coalescingHttpClient == null) {
+			CloseableHttpClient backend = closeableHttpClient();
+			coalescingHttpClient = keyFunction == null ? new CoalescingHttpClient(backend) : new CoalescingHttpClient(backend, keyFunction);
+			httpClient = coalescingHttpClient;
+		}
+		return coalescingHttpClient;
+	}
+
+	/**
+	 * 开启按目标地址的重试和熔断，应在enableCache、enableCoalescing之前调用，使其只作用于真正发出的请求。
+	 * 经过它的请求不再使用连接池客户端的自动重试，一次调用最多发出maxRetries+1次请求
+	 * 
+	 * @param policy
+	 * @return 可监听熔断器状态变化、查看各目标地址的熔断器
+	 */
+	public synchronized ResilientHttpClient enableResilience(ResiliencePolicy policy) {
+		if (resilientHttpClient == null) {
+			resilientHttpClient = new ResilientHttpClient(closeableHttpClient(), policy);
+			httpClient = resilientHttpClient;
+		}
+		return resilientHttpClient;
+	}
+
+	/**
+	 * 开启对冲请求：幂等请求超过响应时间分位仍未返回时再发一个相同的请求，先返回的胜出。
+	 * 应在enableResilience之后、enableCache和enableCoalescing之前调用
+	 * 
+	 * @param policy
+	 * @return 可查看对冲次数和各目标地址的等待时间
+	 */
+	public synchronized HedgingHttpClient enableHedging(HedgingPolicy policy) {
+		if (hedgingHttpClient == null) {
+			hedgingHttpClient = new HedgingHttpClient(closeableHttpClient(), policy);
+			httpClient = hedgingHttpClient;
+		}
+		return hedgingHttpClient;
+	}
+
+	/**
+	 * 开启按目标地址的速率和并发数限制，超过限制的请求排队等待或直接抛出RateLimitExceededException。
+	 * 应在enableResilience、enableHedging之前调用，使重试和对冲请求也受限制
+	 * 
+	 * @param policy
+	 * @return 可查看各目标地址进行中的请求数和被拒绝的次数
+	 */
+	public synchronized RateLimitingHttpClient enableRateLimit(RateLimitPolicy policy) {
+		if (rateLimitingHttpClient == null) {
+			rateLimitingHttpClient = new RateLimitingHttpClient(closeableHttpClient(), policy);
+			httpClient = rateLimitingHttpClient;
+		}
+		return rateLimitingHttpClient;
+	}
+
+	/**
+	 * 开启按目标地址和路径模板的请求统计：耗时直方图、状态码、请求和响应字节数。
+	 * 应在其他enable方法之前调用，只统计真正发出的请求(每次重试、对冲请求分别统计，缓存命中不统计)
+	 * 
+	 * @return 可查看和清空统计
+	 */
+	public MetricsHttpClient enableMetrics() {
+		return enableMetrics(null, 256);
+	}
+
+	/**
+	 * @param templateFunction 计算请求的路径模板，为null时将路径中的数字段和长十六进制段替换为{id}
+	 * @param maxRoutes        路径模板数(含各地址的{other})和目标地址数上限，超过后计入该地址或*的{other}
+	 * @return 可查看和清空统计
+	 */
+	public synchronized MetricsHttpClient enableMetrics(Function<HttpRequest, String> templateFunction, int maxRoutes) {
+		if (metricsHttpClient == null) {
+			metricsHttpClient = new MetricsHttpClient(closeableHttpClient(), templateFunction, maxRoutes);
+			httpClient = metricsHttpClient;
+		}
+		return metricsHttpClient;
+	}
+
+	/**
+	 * @return 请求统计和连接池统计
+	 */
+	public HttpMetricsSnapshot getMetrics() {
+		MetricsHttpClient metrics = metricsHttpClient;
+		List<HttpRouteStats> routes = metrics == null ? Collections.<HttpRouteStats> emptyList() : metrics.getRouteStats();
+		return new HttpMetricsSnapshot(routes, getPoolStats(), getTotalPoolStats());
+	}
+
+	/**
+	 * 定时以INFO级别输出统计，close时停止
+	 * 
+	 * @param periodMillis 输出间隔(毫秒)
+	 */
+	public synchronized void startMetricsLog(long periodMillis) {
+		if (metricsLogger != null) {
+			return;
+		}
+		metricsLogger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "http-metrics-log");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		metricsLogger.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				try {
+					log.info("{}", getMetrics());
+				} catch (RuntimeException e) {
+					log.warn("log http metrics failed", e);
+				}
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private CloseableHttpClient closeableHttpClient() {
+		if (!(httpClient instanceof CloseableHttpClient)) {
+			throw new IllegalStateException("not supported by " + httpClient.getClass().getName());
+		}
+		return (CloseableHttpClient) httpClient;
+	}
+
+	/**
+	 * 按路由的连接池统计：使用中、空闲、等待中的连接数和获取连接的等待时间
+	 * 
+	 * @return key为目标地址；使用证书或默认方式创建的客户端没有统计，返回空
+	 */
+	public Map<String, HttpPoolStats> getPoolStats() {
+		if (connectionManager == null) {
+			return Collections.emptyMap();
+		}
+		return connectionManager.getRoutePoolStats();
+	}
+
+	/**
+	 * @return 整个连接池的统计，没有统计时返回null
+	 */
+	public HttpPoolStats getTotalPoolStats() {
+		return connectionManager == null ? null : connectionManager.getTotalPoolStats();
+	}
+
+	/**
+	 * @throws HttpClientException 请求失败，超时为{@link HttpTimeoutException}，熔断时为CircuitBreakerOpenException
+	 */
 	public <T> T execute(HttpUriRequest request,ResponseHandler<T> responseHandler){
 		try {
 			return httpClient.execute(request, responseHandler);
-		} catch (ClientProtocolException e) {
-			e.printStackTrace();
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw toException(request, e);
 		}
-		return null;
 	}
 	
 	public HttpResponse execute(HttpUriRequest request) {
 		try {
 			return httpClient.execute(request);
-		} catch (ClientProtocolException e) {
-			e.printStackTrace();
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw toException(request, e);
 		}
-		return null;
 	}
 	
 	public HttpClient getHttpClient() {
 		return httpClient;
 	}
+
+	/**
+	 * 异步客户端，首次使用时创建，与同步客户端使用不同的连接池，https的证书和主机名校验、连接数和超时配置与同步客户端一致
+	 * 
+	 * @throws IllegalStateException 客户端已关闭，或证书库无法加载
+	 */
+	public CloseableHttpAsyncClient getHttpAsyncClient() {
+		CloseableHttpAsyncClient client = httpAsyncClient;
+		if (client == null) {
+			synchronized (this) {
+				client = httpAsyncClient;
+				if (client == null) {
+					if (closed.get()) {
+						throw new IllegalStateException("http client is closed");
+					}
+					HttpClientConfig asyncConfig = config;
+					if (asyncConfig == null) {
+						// 默认单例用证书库或不限连接数创建时没有配置，按默认的超时和每个路由的连接数
+						asyncConfig = new HttpClientConfig();
+						asyncConfig.setMaxTotal(maxTotal > 0 ? maxTotal : 200);
+						asyncConfig.setMaxPerRoute(Math.min(asyncConfig.getMaxPerRoute(), asyncConfig.getMaxTotal()));
+					}
+					client = HttpClientFactory.createHttpAsyncClient(asyncConfig, asyncSslStrategy.get());
+					httpAsyncClient = client;
+				}
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * 异步执行请求，不占用调用线程
+	 * <p>
+	 * 响应在I/O线程上完整读入内存后交给responseHandler处理，responseHandler中不要做耗时操作
+	 * 
+	 * @param request
+	 * @param responseHandler
+	 * @return 取消该future会中止请求
+	 */
+	public <T> CompletableFuture<T> executeAsync(HttpUriRequest request, final ResponseHandler<T> responseHandler) {
+		final CompletableFuture<T> result = new CompletableFuture<T>();
+		final Future<HttpResponse> future = getHttpAsyncClient().execute(request, new FutureCallback<HttpResponse>() {
+			public void completed(HttpResponse response) {
+				try {
+					result.complete(responseHandler.handleResponse(response));
+				} catch (Exception e) {
+					result.completeExceptionally(e);
+				} finally {
+					EntityUtils.consumeQuietly(response.getEntity());
+				}
+			}
+
+			public void failed(Exception e) {
+				result.completeExceptionally(e);
+			}
+
+			public void cancelled() {
+				result.cancel(false);
+			}
+		});
+		result.whenComplete((value, e) -> {
+			if (result.isCancelled()) {
+				future.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * 异步执行请求，与{@link #exe(HttpUriRequest)}一致：状态码为200时返回响应内容，否则返回null
+	 * 
+	 * @param request
+	 * @return
+	 */
+	public CompletableFuture<String> executeAsync(HttpUriRequest request) {
+		return executeAsync(request, STRING_RESPONSE_HANDLER);
+	}
+
+	/**
+	 * 并发执行多个请求，总耗时取决于最慢的一个请求
+	 * 
+	 * @param requests
+	 * @param responseHandler
+	 * @return 按请求顺序排列的结果；任一请求失败时整体失败
+	 */
+	public <T> CompletableFuture<List<T>> executeAll(List<? extends HttpUriRequest> requests, ResponseHandler<T> responseHandler) {
+		final List<CompletableFuture<T>> futures = new ArrayList<CompletableFuture<T>>(requests.size());
+		for (HttpUriRequest request : requests) {
+			futures.add(executeAsync(request, responseHandler));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()])).thenApply(v -> {
+			List<T> results = new ArrayList<T>(futures.size());
+			for (CompletableFuture<T> future : futures) {
+				results.add(future.join());
+			}
+			return results;
+		});
+	}
+
+	/**
+	 * 并发执行多个请求，结果同{@link #executeAsync(HttpUriRequest)}
+	 * 
+	 * @param requests
+	 * @return
+	 */
+	public CompletableFuture<List<String>> executeAll(List<? extends HttpUriRequest> requests) {
+		return executeAll(requests, STRING_RESPONSE_HANDLER);
+	}
 	
 	public String exe(HttpUriRequest request) {
 		HttpResponse response = null;
@@ -89,10 +584,8 @@ public class LocalHttpClient {
 			if (entity != null) {
 				return EntityUtils.toString(entity);
 			}
-		} catch (ClientProtocolException e) {
-			e.printStackTrace();
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw toException(request, e);
 		} finally {
 			if (response != null) {
 				release(response);
@@ -109,10 +602,8 @@ public class LocalHttpClient {
 			if (entity != null) {
 				return EntityUtils.toString(entity);
 			}
-		} catch (ClientProtocolException e) {
-			e.printStackTrace();
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw toException(httppost, e);
 		} finally {
 			if (response != null) {
 				release(response);
@@ -121,6 +612,245 @@ public class LocalHttpClient {
 		return null;
 	}
 
+	/**
+	 * 下载到文件，已有的文件被覆盖
+	 * 
+	 * @param request
+	 * @param target
+	 * @return 文件字节数
+	 */
+	public long download(HttpUriRequest request, Path target) {
+		return download(request, target, null, false);
+	}
+
+	/**
+	 * 下载到文件，响应内容按块直接写入FileChannel，内存占用与文件大小无关
+	 * <p>
+	 * 续传时按已有文件的大小发送Range请求：服务端返回206时追加，返回200时从头覆盖，返回416且文件已完整时直接返回。
+	 * 请求带Accept-Encoding: identity，写入文件的是未压缩的内容；请求带Cache-Control: no-store，不经过响应缓存和请求合并
+	 * 
+	 * @param request
+	 * @param target
+	 * @param listener 进度回调，可以为null
+	 * @param resume   是否从已有文件的末尾续传
+	 * @return 文件字节数
+	 * @throws HttpClientException 请求失败或状态码不是200、206
+	 */
+	public long download(HttpUriRequest request, Path target, ProgressListener listener, boolean resume) {
+		HttpResponse response = null;
+		try {
+			long offset = resume && Files.exists(target) ? Files.size(target) : 0;
+			if (offset > 0) {
+				request.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+			} else {
+				// 同一请求对象续传后再次使用时去掉之前的Range
+				request.removeHeaders(HttpHeaders.RANGE);
+			}
+			// 不压缩，Range的偏移与写入文件的字节一致
+			request.setHeader(HttpHeaders.ACCEPT_ENCODING, "identity");
+			if (!request.containsHeader(HttpHeaders.CACHE_CONTROL)) {
+				request.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+			}
+			response = httpClient.execute(request);
+			int status = response.getStatusLine().getStatusCode();
+			long[] range = contentRange(response);
+			if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && offset > 0 && range != null && range[2] == offset) {
+				// 文件已经完整
+				if (listener != null) {
+					listener.onProgress(offset, offset);
+				}
+				return offset;
+			}
+			if (status == HttpStatus.SC_PARTIAL_CONTENT && offset > 0 && range != null && range[0] == offset) {
+				log.info("resume download {} from {}", request.getURI(), offset);
+			} else if (status == HttpStatus.SC_OK) {
+				offset = 0;
+			} else {
+				throw new HttpClientException(request.getMethod() + " " + request.getURI() + " returned " + response.getStatusLine());
+			}
+			HttpEntity entity = response.getEntity();
+			long total = entity == null || entity.getContentLength() < 0 ? -1 : offset + entity.getContentLength();
+			return transfer(entity, target, offset, total, listener);
+		} catch (IOException e) {
+			throw toException(request, e);
+		} finally {
+			close(response);
+		}
+	}
+
+	private static long transfer(HttpEntity entity, Path target, long offset, long total, ProgressListener listener) throws IOException {
+		FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try {
+			channel.truncate(offset);
+			long position = offset;
+			if (entity != null) {
+				ReadableByteChannel source = Channels.newChannel(entity.getContent());
+				long n;
+				while ((n = channel.transferFrom(source, position, DOWNLOAD_CHUNK_BYTES)) > 0) {
+					position += n;
+					if (listener != null) {
+						listener.onProgress(position, total);
+					}
+				}
+			}
+			if (total >= 0 && position != total) {
+				throw new IOException("download incomplete: " + position + " of " + total + " bytes");
+			}
+			return position;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * 解析Content-Range: bytes 开始-结束/总长度，416响应为bytes *&#47;总长度
+	 * 
+	 * @return 开始、结束、总长度，未知的为-1；没有该响应头或格式不对时返回null
+	 */
+	private static long[] contentRange(HttpResponse response) {
+		Header header = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+		if (header == null || !header.getValue().startsWith("bytes ")) {
+			return null;
+		}
+		String value = header.getValue().substring("bytes ".length()).trim();
+		int slash = value.indexOf('/');
+		if (slash < 0) {
+			return null;
+		}
+		try {
+			long[] range = { -1, -1, -1 };
+			String total = value.substring(slash + 1);
+			if (!"*".equals(total)) {
+				range[2] = Long.parseLong(total);
+			}
+			String bytes = value.substring(0, slash);
+			int dash = bytes.indexOf('-');
+			if (dash > 0) {
+				range[0] = Long.parseLong(bytes.substring(0, dash));
+				range[1] = Long.parseLong(bytes.substring(dash + 1));
+			}
+			return range;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * POST上传文件，Content-Type为application/octet-stream
+	 * 
+	 * @param file
+	 * @param uri
+	 * @return 响应内容
+	 */
+	public String upload(Path file, URI uri) {
+		return upload(new HttpPost(uri), file, null, 0);
+	}
+
+	/**
+	 * 上传文件，发送时从FileChannel按块写出，内存占用与文件大小无关
+	 * <p>
+	 * offset大于0时只发送文件的剩余部分并带Content-Range: bytes offset-end/size，
+	 * offset由调用方按服务端的续传协议获得(如查询已接收的字节数)
+	 * 
+	 * @param request  请求方法和地址，请求内容会被替换
+	 * @param file
+	 * @param listener 进度回调，可以为null
+	 * @param offset   从文件的该位置开始发送
+	 * @return 响应内容
+	 * @throws HttpClientException 请求失败或状态码不是2xx
+	 */
+	public String upload(HttpEntityEnclosingRequestBase request, Path file, ProgressListener listener, long offset) {
+		HttpResponse response = null;
+		try {
+			long size = Files.size(file);
+			if (offset < 0 || offset > size) {
+				throw new IllegalArgumentException("offset " + offset + " out of file size " + size);
+			}
+			request.setEntity(new FileChannelEntity(file, offset, size - offset, ContentType.APPLICATION_OCTET_STREAM, listener));
+			if (offset > 0) {
+				request.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + offset + "-" + (size - 1) + "/" + size);
+			}
+			response = httpClient.execute(request);
+			int status = response.getStatusLine().getStatusCode();
+			if (status < 200 || status >= 300) {
+				throw new HttpClientException(request.getMethod() + " " + request.getURI() + " returned " + response.getStatusLine());
+			}
+			HttpEntity entity = response.getEntity();
+			return entity == null ? null : EntityUtils.toString(entity);
+		} catch (IOException e) {
+			throw toException(request, e);
+		} finally {
+			close(response);
+		}
+	}
+
+	/**
+	 * 关闭响应：内容已读完时连接回到连接池，否则断开连接，不读取剩余内容
+	 */
+	private void close(HttpResponse response) {
+		if (response instanceof Closeable) {
+			try {
+				((Closeable) response).close();
+			} catch (IOException e) {
+				log.warn("close response failed", e);
+			}
+		} else if (response != null) {
+			release(response);
+		}
+	}
+
+	/**
+	 * 关闭同步和异步客户端，释放连接池、后台清理线程和统计输出线程，重复调用无效
+	 */
+	public void close() {
+		if (!closed.compareAndSet(false, true)) {
+			return;
+		}
+		// 关闭后同名客户端或默认单例可以重新创建
+		if (name != null) {
+			NAMED_CLIENTS.remove(name, this);
+		}
+		synchronized (LocalHttpClient.class) {
+			if (localHttpClient == this) {
+				localHttpClient = null;
+			}
+		}
+		CloseableHttpAsyncClient client;
+		synchronized (this) {
+			if (metricsLogger != null) {
+				metricsLogger.shutdownNow();
+				metricsLogger = null;
+			}
+			// 与getHttpAsyncClient互斥，关闭后不会再创建异步客户端
+			client = httpAsyncClient;
+		}
+		if (httpClient instanceof Closeable) {
+			try {
+				((Closeable) httpClient).close();
+			} catch (IOException e) {
+				log.warn("close http client failed", e);
+			}
+		}
+		if (client != null) {
+			try {
+				client.close();
+			} catch (IOException e) {
+				log.warn("close http async client failed", e);
+			}
+		}
+	}
+
+	/**
+	 * I/O异常转换为不需要检查的异常，超时为{@link HttpTimeoutException}
+	 */
+	private static HttpClientException toException(HttpUriRequest request, IOException e) {
+		String message = request.getMethod() + " " + request.getURI() + " failed: " + e.getMessage();
+		if (e instanceof SocketTimeoutException || e instanceof ConnectTimeoutException) {
+			return new HttpTimeoutException(message, e);
+		}
+		return new HttpClientException(message, e);
+	}
+
 	private void release(HttpResponse response) {
 		try {
 			// 自动释放连接
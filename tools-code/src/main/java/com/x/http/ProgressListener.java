@@ -0,0 +1,15 @@
+package com.x.http;
+
+/**
+ * 上传、下载进度回调，在传输线程上调用，不应阻塞
+ *
+ * @author M
+ */
+public interface ProgressListener {
+
+	/**
+	 * @param transferred 已传输的字节数，断点续传时包括之前传输的部分
+	 * @param total       总字节数，未知时为-1
+	 */
+	void onProgress(long transferred, long total);
+}
@@ -0,0 +1,271 @@
+package com.x.http;
+
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLContexts;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按信任配置共享的TLS上下文，首次使用时创建
+ * <p>
+ * 同一信任配置的客户端使用同一个SSLContext，会话缓存在SSLContext中，新建的连接池也能恢复之前的会话，不必每次完整握手。
+ * 只启用TLSv1.3和TLSv1.2(以运行的JVM支持为准)
+ *
+ * @author M
+ */
+public final class TlsContexts {
+
+	/**
+	 * 启用的协议，按优先顺序
+	 */
+	private static final String[] PROTOCOLS = { "TLSv1.3", "TLSv1.2" };
+
+	/**
+	 * 客户端缓存的会话数
+	 */
+	private static final int SESSION_CACHE_SIZE = 2048;
+
+	/**
+	 * 缓存的会话有效时间(秒)，服务端可以要求更短
+	 */
+	private static final int SESSION_TIMEOUT_SECONDS = 4 * 60 * 60;
+
+	/**
+	 * key为固定信任配置的名称，或证书库的{@link KeystoreKey}
+	 */
+	private static final ConcurrentMap<Object, Tls> CONTEXTS = new ConcurrentHashMap<Object, Tls>();
+
+	private TlsContexts() {
+	}
+
+	/**
+	 * 信任任何证书，不校验主机名
+	 */
+	public static SSLConnectionSocketFactory trustAll() {
+		return get("trust-all").socketFactory;
+	}
+
+	/**
+	 * 信任任何证书，不校验主机名，供异步客户端使用
+	 */
+	public static SSLIOSessionStrategy trustAllAsync() {
+		return get("trust-all").ioSessionStrategy;
+	}
+
+	/**
+	 * 使用JVM默认的信任证书，校验主机名
+	 */
+	public static SSLConnectionSocketFactory system() {
+		return get("system").socketFactory;
+	}
+
+	/**
+	 * 使用JVM默认的信任证书，不校验主机名
+	 */
+	public static SSLConnectionSocketFactory systemAllowAllHostnames() {
+		return get("system-allow-all-hostnames").socketFactory;
+	}
+
+	/**
+	 * 使用JVM默认的信任证书，不校验主机名，供异步客户端使用
+	 */
+	public static SSLIOSessionStrategy systemAllowAllHostnamesAsync() {
+		return get("system-allow-all-hostnames").ioSessionStrategy;
+	}
+
+	/**
+	 * 信任证书库中的CA和所有自签名证书
+	 *
+	 * @param keystorePath 证书库路径
+	 * @param password     证书库密码
+	 */
+	public static SSLConnectionSocketFactory keystore(String keystorePath, String password) {
+		return keystoreTls(keystorePath, password).socketFactory;
+	}
+
+	/**
+	 * 信任证书库中的CA和所有自签名证书，供异步客户端使用
+	 *
+	 * @param keystorePath 证书库路径
+	 * @param password     证书库密码
+	 */
+	public static SSLIOSessionStrategy keystoreAsync(String keystorePath, String password) {
+		return keystoreTls(keystorePath, password).ioSessionStrategy;
+	}
+
+	private static Tls keystoreTls(final String keystorePath, final String password) {
+		KeystoreKey key = new KeystoreKey(new File(keystorePath).getAbsolutePath(), password);
+		Tls tls = CONTEXTS.get(key);
+		if (tls == null) {
+			tls = CONTEXTS.computeIfAbsent(key, k -> loadKeystore(keystorePath, password));
+		}
+		return tls;
+	}
+
+	/**
+	 * @return 所有共享上下文中缓存的会话数
+	 */
+	public static int getCachedSessionCount() {
+		int count = 0;
+		for (Tls tls : CONTEXTS.values()) {
+			count += size(tls.context.getClientSessionContext());
+		}
+		return count;
+	}
+
+	/**
+	 * 丢弃所有共享上下文，之后的连接重新完整握手；已创建的客户端不受影响
+	 */
+	public static void clear() {
+		CONTEXTS.clear();
+	}
+
+	private static int size(SSLSessionContext sessionContext) {
+		int count = 0;
+		for (Enumeration<byte[]> ids = sessionContext.getIds(); ids.hasMoreElements(); ids.nextElement()) {
+			count++;
+		}
+		return count;
+	}
+
+	private static Tls get(final String name) {
+		Tls tls = CONTEXTS.get(name);
+		if (tls == null) {
+			tls = CONTEXTS.computeIfAbsent(name, k -> create(name));
+		}
+		return tls;
+	}
+
+	private static Tls create(String name) {
+		try {
+			if ("trust-all".equals(name)) {
+				TrustStrategy anyTrustStrategy = new TrustStrategy() {
+					public boolean isTrusted(X509Certificate[] x509Certificates, String s) throws CertificateException {
+						return true;
+					}
+				};
+				return new Tls(SSLContexts.custom().loadTrustMaterial(null, anyTrustStrategy).build(), NoopHostnameVerifier.INSTANCE);
+			}
+			if ("system".equals(name)) {
+				return new Tls(SSLContexts.custom().build(), SSLConnectionSocketFactory.getDefaultHostnameVerifier());
+			}
+			// system-allow-all-hostnames
+			return new Tls(SSLContexts.custom().build(), NoopHostnameVerifier.INSTANCE);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("failed to create ssl context", e);
+		}
+	}
+
+	private static Tls loadKeystore(String keystorePath, String password) {
+		try {
+			KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
+			InputStream in = new FileInputStream(keystorePath);
+			try {
+				keystore.load(in, password == null ? null : password.toCharArray());
+			} finally {
+				in.close();
+			}
+			// 相信自己的CA和所有自签名的证书
+			return new Tls(SSLContexts.custom().loadTrustMaterial(keystore, new TrustSelfSignedStrategy()).build(),
+					SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("failed to create ssl context", e);
+		} catch (IOException e) {
+			throw new IllegalStateException("failed to load keystore", e);
+		}
+	}
+
+	private static String[] supportedProtocols(SSLContext context) {
+		List<String> supported = Arrays.asList(context.getSupportedSSLParameters().getProtocols());
+		List<String> protocols = new ArrayList<String>();
+		for (String protocol : PROTOCOLS) {
+			if (supported.contains(protocol)) {
+				protocols.add(protocol);
+			}
+		}
+		return protocols.toArray(new String[protocols.size()]);
+	}
+
+	/**
+	 * 证书库的key：绝对路径和密码的SHA-256摘要，不保存密码明文
+	 */
+	private static final class KeystoreKey {
+
+		private final String path;
+
+		private final byte[] passwordDigest;
+
+		KeystoreKey(String path, String password) {
+			this.path = path;
+			this.passwordDigest = password == null ? new byte[0] : digest(password);
+		}
+
+		private static byte[] digest(String password) {
+			try {
+				return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof KeystoreKey)) {
+				return false;
+			}
+			KeystoreKey other = (KeystoreKey) o;
+			return path.equals(other.path) && Arrays.equals(passwordDigest, other.passwordDigest);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * path.hashCode() + Arrays.hashCode(passwordDigest);
+		}
+	}
+
+	private static class Tls {
+
+		private final SSLContext context;
+
+		private final SSLConnectionSocketFactory socketFactory;
+
+		private final SSLIOSessionStrategy ioSessionStrategy;
+
+		Tls(SSLContext context, HostnameVerifier hostnameVerifier) {
+			SSLSessionContext sessionContext = context.getClientSessionContext();
+			sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+			sessionContext.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+			this.context = context;
+			String[] protocols = supportedProtocols(context);
+			// 同步和异步客户端使用同样的证书、协议和主机名校验
+			this.socketFactory = new SSLConnectionSocketFactory(context, protocols, null, hostnameVerifier);
+			this.ioSessionStrategy = new SSLIOSessionStrategy(context, protocols, null, hostnameVerifier);
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package com.x.http.cache;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 缓存的响应：状态行、响应头和完整的响应内容
+ *
+ * @author M
+ */
+public class CacheEntry {
+
+	/**
+	 * 除内容和响应头外每条缓存估算占用的字节数
+	 */
+	private static final int OVERHEAD_BYTES = 128;
+
+	private final ProtocolVersion protocolVersion;
+
+	private final int statusCode;
+
+	private final String reasonPhrase;
+
+	private final Header[] headers;
+
+	private final byte[] body;
+
+	/**
+	 * 过期时间，之后需要重新验证
+	 */
+	private final long expiresAt;
+
+	private final long size;
+
+	CacheEntry(HttpResponse response, byte[] body, long now) {
+		this(response.getStatusLine().getProtocolVersion(), response.getStatusLine().getStatusCode(),
+				response.getStatusLine().getReasonPhrase(), response.getAllHeaders(), body, now);
+	}
+
+	private CacheEntry(ProtocolVersion protocolVersion, int statusCode, String reasonPhrase, Header[] headers, byte[] body, long now) {
+		this.protocolVersion = protocolVersion;
+		this.statusCode = statusCode;
+		this.reasonPhrase = reasonPhrase;
+		this.headers = headers;
+		this.body = body;
+		this.expiresAt = now + freshnessMillis(headers, now);
+		long size = OVERHEAD_BYTES + body.length;
+		for (Header header : headers) {
+			size += (header.getName().length() + header.getValue().length()) * 2;
+		}
+		this.size = size;
+	}
+
+	/**
+	 * 收到304后用新的响应头更新缓存，重新计算过期时间
+	 */
+	CacheEntry revalidated(HttpResponse notModified, long now) {
+		List<Header> merged = new ArrayList<Header>();
+		for (Header header : headers) {
+			if (!notModified.containsHeader(header.getName())) {
+				merged.add(header);
+			}
+		}
+		for (Header header : notModified.getAllHeaders()) {
+			String name = header.getName();
+			if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+				merged.add(header);
+			}
+		}
+		return new CacheEntry(protocolVersion, statusCode, reasonPhrase, merged.toArray(new Header[merged.size()]), body, now);
+	}
+
+	/**
+	 * @return 新的响应对象，可以被多个调用方同时读取
+	 */
+	CloseableHttpResponse toResponse() {
+		CachedHttpResponse response = new CachedHttpResponse(protocolVersion, statusCode, reasonPhrase);
+		response.setHeaders(headers);
+		Header contentType = getFirstHeader(HttpHeaders.CONTENT_TYPE);
+		ByteArrayEntity entity = new ByteArrayEntity(body, contentType == null ? null : ContentType.parse(contentType.getValue()));
+		Header contentEncoding = getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+		if (contentEncoding != null) {
+			entity.setContentEncoding(contentEncoding);
+		}
+		response.setEntity(entity);
+		return response;
+	}
+
+	boolean isFresh(long now) {
+		return now < expiresAt;
+	}
+
+	/**
+	 * @return 是否有可用于重新验证的ETag或Last-Modified
+	 */
+	boolean hasValidator() {
+		return getETag() != null || getLastModified() != null;
+	}
+
+	String getETag() {
+		Header header = getFirstHeader(HttpHeaders.ETAG);
+		return header == null ? null : header.getValue();
+	}
+
+	String getLastModified() {
+		Header header = getFirstHeader(HttpHeaders.LAST_MODIFIED);
+		return header == null ? null : header.getValue();
+	}
+
+	/**
+	 * @return 估算占用的字节数
+	 */
+	long getSize() {
+		return size;
+	}
+
+	private Header getFirstHeader(String name) {
+		for (Header header : headers) {
+			if (header.getName().equalsIgnoreCase(name)) {
+				return header;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 响应的新鲜时间：优先Cache-Control的max-age，其次Expires - Date，减去Age；no-cache时为0
+	 */
+	static long freshnessMillis(Header[] headers, long now) {
+		long maxAge = -1;
+		long age = 0;
+		String expires = null;
+		Date date = null;
+		for (Header header : headers) {
+			String name = header.getName();
+			if (HttpHeaders.CACHE_CONTROL.equalsIgnoreCase(name)) {
+				for (HeaderElement element : header.getElements()) {
+					if ("no-cache".equalsIgnoreCase(element.getName())) {
+						return 0;
+					}
+					if ("max-age".equalsIgnoreCase(element.getName())) {
+						maxAge = parseSeconds(element.getValue());
+					}
+				}
+			} else if (HttpHeaders.EXPIRES.equalsIgnoreCase(name)) {
+				expires = header.getValue();
+			} else if (HttpHeaders.DATE.equalsIgnoreCase(name)) {
+				date = DateUtils.parseDate(header.getValue());
+			} else if (HttpHeaders.AGE.equalsIgnoreCase(name)) {
+				age = Math.max(0, parseSeconds(header.getValue())) * 1000;
+			}
+		}
+		long lifetime;
+		if (maxAge >= 0) {
+			lifetime = maxAge * 1000;
+		} else if (expires != null) {
+			Date expiresDate = DateUtils.parseDate(expires);
+			if (expiresDate == null) {
+				// 无法解析的Expires视为已过期
+				return 0;
+			}
+			lifetime = expiresDate.getTime() - (date == null ? now : date.getTime());
+		} else {
+			return 0;
+		}
+		return Math.max(0, lifetime - age);
+	}
+
+	/**
+	 * @return 响应是否允许存入缓存
+	 */
+	static boolean isCacheable(HttpResponse response, long now) {
+		if (response.getStatusLine().getStatusCode() != 200) {
+			return false;
+		}
+		Header vary = response.getFirstHeader(HttpHeaders.VARY);
+		if (vary != null) {
+			// 不区分Vary指定的请求头，这类响应不缓存
+			return false;
+		}
+		if (response.containsHeader("Set-Cookie")) {
+			// 缓存在进程内共享，不能把一个用户的Cookie返回给其他调用方
+			return false;
+		}
+		for (Header header : response.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+			for (HeaderElement element : header.getElements()) {
+				if ("no-store".equalsIgnoreCase(element.getName()) || "private".equalsIgnoreCase(element.getName())) {
+					return false;
+				}
+			}
+		}
+		boolean hasValidator = response.containsHeader(HttpHeaders.ETAG) || response.containsHeader(HttpHeaders.LAST_MODIFIED);
+		return hasValidator || freshnessMillis(response.getAllHeaders(), now) > 0;
+	}
+
+	private static long parseSeconds(String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * 从缓存生成的响应，不占用连接，close时无需释放
+	 */
+	private static class CachedHttpResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+		CachedHttpResponse(ProtocolVersion ver, int code, String reason) {
+			super(ver, code, reason);
+		}
+
+		public void close() {
+		}
+	}
+}
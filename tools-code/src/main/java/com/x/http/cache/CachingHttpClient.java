@@ -0,0 +1,185 @@
+package com.x.http.cache;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+
+/**
+ * 带响应缓存的客户端，只缓存GET请求
+ * <p>
+ * 按Cache-Control(max-age、no-cache、no-store)和Expires判断缓存是否新鲜；
+ * 过期后带If-None-Match/If-Modified-Since重新验证，得到304时继续使用缓存。
+ * 带Vary的响应和请求中已经带有条件头的请求不经过缓存。
+ * 缓存由同一客户端的所有调用方共享：带Authorization或Cookie的请求不经过缓存，
+ * Cache-Control为private或带Set-Cookie的响应不缓存
+ *
+ * @author M
+ */
+public class CachingHttpClient extends CloseableHttpClient {
+
+	private final CloseableHttpClient backend;
+
+	private final HttpResponseCache cache;
+
+	public CachingHttpClient(CloseableHttpClient backend, HttpResponseCache cache) {
+		this.backend = backend;
+		this.cache = cache;
+	}
+
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+			throws IOException, ClientProtocolException {
+		if (!"GET".equalsIgnoreCase(request.getRequestLine().getMethod()) || hasRequestDirective(request, "no-store")
+				|| request.containsHeader(HttpHeaders.IF_NONE_MATCH) || request.containsHeader(HttpHeaders.IF_MODIFIED_SINCE)
+				|| request.containsHeader(HttpHeaders.RANGE)
+				|| request.containsHeader(HttpHeaders.AUTHORIZATION) || request.containsHeader("Cookie")) {
+			return backend.execute(target, request, context);
+		}
+		String key = keyOf(target, request);
+		CacheEntry entry = cache.get(key);
+		if (entry != null && entry.isFresh(System.currentTimeMillis()) && !hasRequestDirective(request, "no-cache")) {
+			cache.recordHit();
+			return entry.toResponse();
+		}
+		if (entry == null || !entry.hasValidator()) {
+			cache.recordMiss();
+			return store(key, backend.execute(target, request, context));
+		}
+		CloseableHttpResponse response = revalidate(target, request, context, entry);
+		if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+			response.close();
+			cache.recordRevalidation();
+			entry = entry.revalidated(response, System.currentTimeMillis());
+			cache.put(key, entry);
+			return entry.toResponse();
+		}
+		cache.recordMiss();
+		return store(key, response);
+	}
+
+	/**
+	 * 临时加上条件头发送请求，请求对象不变，仍可中止
+	 */
+	private CloseableHttpResponse revalidate(HttpHost target, HttpRequest request, HttpContext context, CacheEntry entry)
+			throws IOException {
+		Header ifNoneMatch = null;
+		Header ifModifiedSince = null;
+		if (entry.getETag() != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, entry.getETag());
+			ifNoneMatch = request.getLastHeader(HttpHeaders.IF_NONE_MATCH);
+		}
+		if (entry.getLastModified() != null) {
+			request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.getLastModified());
+			ifModifiedSince = request.getLastHeader(HttpHeaders.IF_MODIFIED_SINCE);
+		}
+		try {
+			return backend.execute(target, request, context);
+		} finally {
+			if (ifNoneMatch != null) {
+				request.removeHeader(ifNoneMatch);
+			}
+			if (ifModifiedSince != null) {
+				request.removeHeader(ifModifiedSince);
+			}
+		}
+	}
+
+	/**
+	 * 可缓存的响应读入内存后存入缓存；超过单个响应大小限制时把已读部分和剩余部分拼接后原样返回
+	 */
+	private CloseableHttpResponse store(String key, CloseableHttpResponse response) throws IOException {
+		long now = System.currentTimeMillis();
+		HttpEntity entity = response.getEntity();
+		if (!CacheEntry.isCacheable(response, now) || entity == null || entity.getContentLength() > cache.getMaxEntryBytes()) {
+			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+				cache.remove(key);
+			}
+			return response;
+		}
+		ByteArrayOutputStream out;
+		try {
+			InputStream in = entity.getContent();
+			out = new ByteArrayOutputStream(entity.getContentLength() > 0 ? (int) entity.getContentLength() : 4096);
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+				if (out.size() > cache.getMaxEntryBytes()) {
+					InputStream rest = new SequenceInputStream(new ByteArrayInputStream(out.toByteArray()), in);
+					response.setEntity(new InputStreamEntity(rest, -1, ContentType.get(entity)));
+					cache.remove(key);
+					return response;
+				}
+			}
+		} catch (IOException e) {
+			response.close();
+			throw e;
+		}
+		response.close();
+		CacheEntry entry = new CacheEntry(response, out.toByteArray(), now);
+		cache.put(key, entry);
+		return entry.toResponse();
+	}
+
+	private static String keyOf(HttpHost target, HttpRequest request) {
+		if (request instanceof HttpUriRequest) {
+			URI uri = ((HttpUriRequest) request).getURI();
+			if (uri.isAbsolute()) {
+				return uri.toString();
+			}
+		}
+		return target.toURI() + request.getRequestLine().getUri();
+	}
+
+	private static boolean hasRequestDirective(HttpRequest request, String directive) {
+		for (Header header : request.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+			for (HeaderElement element : header.getElements()) {
+				if (directive.equalsIgnoreCase(element.getName())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	public HttpResponseCache getCache() {
+		return cache;
+	}
+
+	@Override
+	public void close() throws IOException {
+		backend.close();
+	}
+
+	@Deprecated
+	@Override
+	public HttpParams getParams() {
+		return backend.getParams();
+	}
+
+	@Deprecated
+	@Override
+	public ClientConnectionManager getConnectionManager() {
+		return backend.getConnectionManager();
+	}
+}
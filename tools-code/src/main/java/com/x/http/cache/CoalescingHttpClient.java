@@ -0,0 +1,211 @@
+package com.x.http.cache;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 合并相同请求的客户端：key相同的并发请求只有第一个真正发出，其余等待并共享它的响应
+ * <p>
+ * 共享的响应会完整读入内存，只应用于响应不大的请求；key函数返回null的请求不合并，
+ * 默认不合并带Range或Cache-Control: no-store的请求
+ *
+ * @author M
+ */
+public class CoalescingHttpClient extends CloseableHttpClient {
+
+	/**
+	 * 默认参与key计算的请求头
+	 */
+	private static final String[] DEFAULT_KEY_HEADERS = { "Accept", "Accept-Language", "Authorization", "Cookie" };
+
+	private final CloseableHttpClient backend;
+
+	private final Function<HttpRequest, String> keyFunction;
+
+	private final ConcurrentMap<String, CompletableFuture<CacheEntry>> inFlight = new ConcurrentHashMap<String, CompletableFuture<CacheEntry>>();
+
+	/**
+	 * 真正发出的请求数
+	 */
+	private final LongAdder leaderCount = new LongAdder();
+
+	/**
+	 * 被合并、共享其他请求响应的请求数
+	 */
+	private final LongAdder coalescedCount = new LongAdder();
+
+	/**
+	 * 按方法、URI和常用请求头合并GET请求
+	 */
+	public CoalescingHttpClient(CloseableHttpClient backend) {
+		this(backend, getKeyFunction(DEFAULT_KEY_HEADERS));
+	}
+
+	/**
+	 * @param backend
+	 * @param keyFunction 计算请求的key，返回null的请求不合并
+	 */
+	public CoalescingHttpClient(CloseableHttpClient backend, Function<HttpRequest, String> keyFunction) {
+		this.backend = backend;
+		this.keyFunction = keyFunction;
+	}
+
+	/**
+	 * 只合并GET请求，key为方法、URI和指定请求头的值
+	 *
+	 * @param headerNames 参与key计算的请求头，值不同的请求不合并
+	 * @return
+	 */
+	public static Function<HttpRequest, String> getKeyFunction(final String... headerNames) {
+		return new Function<HttpRequest, String>() {
+			public String apply(HttpRequest request) {
+				if (!"GET".equalsIgnoreCase(request.getRequestLine().getMethod()) || request.containsHeader(HttpHeaders.RANGE)
+						|| isNoStore(request)) {
+					return null;
+				}
+				StringBuilder key = new StringBuilder("GET ");
+				if (request instanceof HttpUriRequest) {
+					URI uri = ((HttpUriRequest) request).getURI();
+					key.append(uri.toString());
+				} else {
+					key.append(request.getRequestLine().getUri());
+				}
+				for (String name : headerNames) {
+					for (Header header : request.getHeaders(name)) {
+						key.append('\n').append(name).append(':').append(header.getValue());
+					}
+				}
+				return key.toString();
+			}
+		};
+	}
+
+	/**
+	 * 合并时需要缓冲完整的响应内容，不缓冲的请求(如文件下载)带Cache-Control: no-store
+	 */
+	private static boolean isNoStore(HttpRequest request) {
+		for (Header header : request.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+			for (HeaderElement element : header.getElements()) {
+				if ("no-store".equalsIgnoreCase(element.getName())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+			throws IOException, ClientProtocolException {
+		String key = keyFunction.apply(request);
+		if (key == null) {
+			return backend.execute(target, request, context);
+		}
+		if (target != null && !(request instanceof HttpUriRequest && ((HttpUriRequest) request).getURI().isAbsolute())) {
+			key = target.toURI() + " " + key;
+		}
+		CompletableFuture<CacheEntry> future = new CompletableFuture<CacheEntry>();
+		CompletableFuture<CacheEntry> leader = inFlight.putIfAbsent(key, future);
+		if (leader != null) {
+			coalescedCount.increment();
+			return await(leader);
+		}
+		leaderCount.increment();
+		try {
+			CacheEntry entry;
+			CloseableHttpResponse response = backend.execute(target, request, context);
+			try {
+				HttpEntity entity = response.getEntity();
+				entry = new CacheEntry(response, entity == null ? new byte[0] : EntityUtils.toByteArray(entity), System.currentTimeMillis());
+			} finally {
+				response.close();
+			}
+			future.complete(entry);
+			return entry.toResponse();
+		} catch (IOException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} catch (RuntimeException e) {
+			// 如熔断、限流异常，合并的请求收到同样的异常
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			if (!future.isDone()) {
+				future.completeExceptionally(new IOException("coalesced request failed"));
+			}
+			inFlight.remove(key, future);
+		}
+	}
+
+	private static CloseableHttpResponse await(CompletableFuture<CacheEntry> leader) throws IOException {
+		try {
+			return leader.get().toResponse();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for coalesced request");
+		} catch (ExecutionException e) {
+			// 抛出发出请求的线程收到的异常，调用方按异常类型(如SocketTimeoutException)处理时结果一致
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException("coalesced request failed", cause);
+		}
+	}
+
+	/**
+	 * @return 真正发出的请求数
+	 */
+	public long getLeaderCount() {
+		return leaderCount.sum();
+	}
+
+	/**
+	 * @return 被合并的请求数
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.sum();
+	}
+
+	@Override
+	public void close() throws IOException {
+		backend.close();
+	}
+
+	@Deprecated
+	@Override
+	public HttpParams getParams() {
+		return backend.getParams();
+	}
+
+	@Deprecated
+	@Override
+	public ClientConnectionManager getConnectionManager() {
+		return backend.getConnectionManager();
+	}
+}
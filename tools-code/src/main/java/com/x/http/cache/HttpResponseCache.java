@@ -0,0 +1,154 @@
+package com.x.http.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按字节数限制大小的响应缓存，超出时淘汰最久未使用的响应
+ *
+ * @author M
+ */
+public class HttpResponseCache {
+
+	private final long maxBytes;
+
+	private final long maxEntryBytes;
+
+	/**
+	 * 按访问顺序排列，第一个为最久未使用
+	 */
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+
+	private long bytes;
+
+	/**
+	 * 直接返回缓存的次数
+	 */
+	private final LongAdder hitCount = new LongAdder();
+
+	/**
+	 * 没有缓存或缓存不可用，请求了完整响应的次数
+	 */
+	private final LongAdder missCount = new LongAdder();
+
+	/**
+	 * 缓存过期后重新验证得到304、继续使用缓存的次数
+	 */
+	private final LongAdder revalidationCount = new LongAdder();
+
+	private final LongAdder evictionCount = new LongAdder();
+
+	/**
+	 * 单个响应最大为总大小的1/8
+	 *
+	 * @param maxBytes 缓存总字节数
+	 */
+	public HttpResponseCache(long maxBytes) {
+		this(maxBytes, maxBytes / 8);
+	}
+
+	/**
+	 * @param maxBytes 缓存总字节数
+	 * @param maxEntryBytes 单个响应的最大字节数，更大的响应不缓存
+	 */
+	public HttpResponseCache(long maxBytes, long maxEntryBytes) {
+		if (maxBytes <= 0 || maxEntryBytes <= 0 || maxEntryBytes > maxBytes) {
+			throw new IllegalArgumentException("invalid cache size: " + maxBytes + ", entry size: " + maxEntryBytes);
+		}
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = maxEntryBytes;
+	}
+
+	synchronized CacheEntry get(String key) {
+		return entries.get(key);
+	}
+
+	synchronized void put(String key, CacheEntry entry) {
+		if (entry.getSize() > maxEntryBytes) {
+			remove(key);
+			return;
+		}
+		CacheEntry old = entries.put(key, entry);
+		if (old != null) {
+			bytes -= old.getSize();
+		}
+		bytes += entry.getSize();
+		Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			CacheEntry eldest = iterator.next().getValue();
+			iterator.remove();
+			bytes -= eldest.getSize();
+			evictionCount.increment();
+		}
+	}
+
+	synchronized void remove(String key) {
+		CacheEntry old = entries.remove(key);
+		if (old != null) {
+			bytes -= old.getSize();
+		}
+	}
+
+	/**
+	 * 清空缓存，计数不清零
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	void recordHit() {
+		hitCount.increment();
+	}
+
+	void recordMiss() {
+		missCount.increment();
+	}
+
+	void recordRevalidation() {
+		revalidationCount.increment();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getMaxEntryBytes() {
+		return maxEntryBytes;
+	}
+
+	/**
+	 * @return 当前缓存估算占用的字节数
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+
+	public long getMissCount() {
+		return missCount.sum();
+	}
+
+	public long getRevalidationCount() {
+		return revalidationCount.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "HttpResponseCache [entries=" + getEntryCount() + ", bytes=" + getBytes() + "/" + maxBytes + ", hit=" + getHitCount()
+				+ ", miss=" + getMissCount() + ", revalidation=" + getRevalidationCount() + ", eviction=" + getEvictionCount() + "]";
+	}
+}
@@ -0,0 +1,157 @@
+package com.x.http.compress;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HTTP;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 发送时压缩请求内容，使用{@link DeflaterPool}中的Deflater；压缩后长度未知，按chunked发送
+ *
+ * @author M
+ */
+public class CompressingEntity extends HttpEntityWrapper {
+
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final DeflaterPool pool;
+
+	/**
+	 * @param entity 原请求内容
+	 * @param pool nowrap的池生成gzip，否则生成deflate(zlib)
+	 */
+	public CompressingEntity(HttpEntity entity, DeflaterPool pool) {
+		super(entity);
+		this.pool = pool;
+	}
+
+	@Override
+	public Header getContentEncoding() {
+		return new BasicHeader(HTTP.CONTENT_ENCODING, pool.isNowrap() ? "gzip" : "deflate");
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public boolean isChunked() {
+		return true;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		Deflater deflater = pool.borrow();
+		try {
+			boolean gzip = pool.isNowrap();
+			if (gzip) {
+				out.write(GZIP_HEADER);
+			}
+			DeflaterOutputStream deflaterOut = new DeflaterOutputStream(new NonClosingOutputStream(out), deflater, BUFFER_SIZE);
+			CRC32 crc = gzip ? new CRC32() : null;
+			wrappedEntity.writeTo(new CrcOutputStream(deflaterOut, crc));
+			deflaterOut.finish();
+			if (gzip) {
+				writeInt(out, (int) crc.getValue());
+				writeInt(out, (int) deflater.getBytesRead());
+			}
+			out.flush();
+		} finally {
+			pool.release(deflater);
+		}
+	}
+
+	private static void writeInt(OutputStream out, int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+		out.write((value >> 16) & 0xff);
+		out.write((value >> 24) & 0xff);
+	}
+
+	/**
+	 * 原内容写入压缩流，gzip时同时计算CRC；原内容close时不关闭压缩流，之后还要写结尾
+	 */
+	private static class CrcOutputStream extends OutputStream {
+
+		private final OutputStream out;
+
+		private final CRC32 crc;
+
+		CrcOutputStream(OutputStream out, CRC32 crc) {
+			this.out = out;
+			this.crc = crc;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			if (crc != null) {
+				crc.update(b);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			if (crc != null) {
+				crc.update(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * 压缩流finish后不关闭连接的输出流
+	 */
+	private static class NonClosingOutputStream extends OutputStream {
+
+		private final OutputStream out;
+
+		NonClosingOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.x.http.compress;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Deflater对象池
+ * <p>
+ * 每个Deflater都持有zlib的本地内存，每次请求新建再等GC回收代价较高；归还时reset后复用，超过上限的直接释放
+ *
+ * @author M
+ */
+public class DeflaterPool {
+
+	private final int level;
+
+	private final boolean nowrap;
+
+	private final int maxIdle;
+
+	private final ConcurrentLinkedQueue<Deflater> idle = new ConcurrentLinkedQueue<Deflater>();
+
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	/**
+	 * @param level 压缩级别，见{@link Deflater#DEFAULT_COMPRESSION}
+	 * @param nowrap true为不带zlib头的原始deflate数据(用于gzip)，false为zlib格式(用于deflate)
+	 * @param maxIdle 池中最多保留的对象数
+	 */
+	public DeflaterPool(int level, boolean nowrap, int maxIdle) {
+		this.level = level;
+		this.nowrap = nowrap;
+		this.maxIdle = maxIdle;
+	}
+
+	public Deflater borrow() {
+		Deflater deflater = idle.poll();
+		if (deflater == null) {
+			return new Deflater(level, nowrap);
+		}
+		idleCount.decrementAndGet();
+		return deflater;
+	}
+
+	public void release(Deflater deflater) {
+		deflater.reset();
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(deflater);
+		} else {
+			idleCount.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	/**
+	 * 释放池中全部对象
+	 */
+	public void clear() {
+		Deflater deflater;
+		while ((deflater = idle.poll()) != null) {
+			idleCount.decrementAndGet();
+			deflater.end();
+		}
+	}
+
+	public boolean isNowrap() {
+		return nowrap;
+	}
+}
@@ -0,0 +1,49 @@
+package com.x.http.compress;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.zip.Deflater;
+
+/**
+ * 请求内容达到指定长度时压缩后发送
+ * <p>
+ * 需要在设置Content-Length的拦截器之前执行(HttpClientBuilder.addInterceptorFirst)；
+ * 长度未知或已经指定Content-Encoding的请求不压缩。只应用于确认支持压缩请求的服务
+ *
+ * @author M
+ */
+public class RequestCompressionInterceptor implements HttpRequestInterceptor {
+
+	private final long minBytes;
+
+	private final DeflaterPool pool;
+
+	/**
+	 * @param minBytes 请求内容达到该长度才压缩
+	 * @param encoding gzip或deflate
+	 */
+	public RequestCompressionInterceptor(long minBytes, String encoding) {
+		if (!"gzip".equalsIgnoreCase(encoding) && !"deflate".equalsIgnoreCase(encoding)) {
+			throw new IllegalArgumentException("unsupported content encoding: " + encoding);
+		}
+		this.minBytes = minBytes;
+		this.pool = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, "gzip".equalsIgnoreCase(encoding), Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	public void process(HttpRequest request, HttpContext context) {
+		if (!(request instanceof HttpEntityEnclosingRequest) || request.containsHeader(HTTP.CONTENT_ENCODING)) {
+			return;
+		}
+		HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+		HttpEntity entity = enclosing.getEntity();
+		if (entity == null || entity.getContentEncoding() != null || entity.getContentLength() < minBytes) {
+			return;
+		}
+		enclosing.setEntity(new CompressingEntity(entity, pool));
+	}
+}
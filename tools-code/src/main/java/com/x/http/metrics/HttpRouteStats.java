@@ -0,0 +1,91 @@
+package com.x.http.metrics;
+
+import java.util.Map;
+
+/**
+ * 一个目标地址下一个路径模板的请求统计快照
+ *
+ * @author M
+ */
+public class HttpRouteStats {
+
+	/**
+	 * 目标地址，如https://api.example.com:443
+	 */
+	private final String host;
+
+	/**
+	 * 路径模板，如/orders/{id}
+	 */
+	private final String path;
+
+	/**
+	 * 发出请求到收到响应头的耗时(微秒)，包括获取连接
+	 */
+	private final LatencyHistogram.Snapshot latency;
+
+	/**
+	 * 按状态码的响应数
+	 */
+	private final Map<Integer, Long> statusCounts;
+
+	/**
+	 * 没有收到响应(I/O异常)的请求数
+	 */
+	private final long errors;
+
+	/**
+	 * 发出的请求内容字节数，不含请求头
+	 */
+	private final long bytesSent;
+
+	/**
+	 * 收到的响应内容字节数，不含响应头
+	 */
+	private final long bytesReceived;
+
+	public HttpRouteStats(String host, String path, LatencyHistogram.Snapshot latency, Map<Integer, Long> statusCounts,
+			long errors, long bytesSent, long bytesReceived) {
+		this.host = host;
+		this.path = path;
+		this.latency = latency;
+		this.statusCounts = statusCounts;
+		this.errors = errors;
+		this.bytesSent = bytesSent;
+		this.bytesReceived = bytesReceived;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public LatencyHistogram.Snapshot getLatency() {
+		return latency;
+	}
+
+	public Map<Integer, Long> getStatusCounts() {
+		return statusCounts;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	@Override
+	public String toString() {
+		return host + path + " [latency(us): " + latency + ", status=" + statusCounts + ", errors=" + errors
+				+ ", bytesSent=" + bytesSent + ", bytesReceived=" + bytesReceived + "]";
+	}
+}
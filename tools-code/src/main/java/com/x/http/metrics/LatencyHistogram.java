@@ -0,0 +1,164 @@
+package com.x.http.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定内存的耗时直方图，线程安全，记录时不分配对象
+ * <p>
+ * 每个2的幂区间再等分为8个桶，相对误差不超过12.5%；单位由调用方决定(通常为微秒)
+ *
+ * @author M
+ */
+public class LatencyHistogram {
+
+	/**
+	 * 每个2的幂区间细分的桶数 = 2^SUB_BUCKET_BITS
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * 记录一个值，负数按0记录
+	 *
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(indexOf(value));
+		count.increment();
+		sum.add(value);
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// 其他线程更新了最大值，重试
+		}
+	}
+
+	/**
+	 * @return 当前数据的快照，快照期间仍在记录的值可能只体现在部分统计中
+	 */
+	public Snapshot snapshot() {
+		long[] counts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = buckets.get(i);
+			total += counts[i];
+		}
+		return new Snapshot(counts, total, sum.sum(), max.get());
+	}
+
+	/**
+	 * 清空全部数据
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * @return 记录的值的个数
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+	}
+
+	/**
+	 * @return 桶内的最大值
+	 */
+	static long upperBoundOf(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long lower = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+	/**
+	 * 直方图快照
+	 */
+	public static class Snapshot {
+
+		private final long[] counts;
+
+		private final long count;
+
+		private final long sum;
+
+		private final long max;
+
+		Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * @param quantile 0~1，如0.99
+		 * @return 该分位的近似值，没有数据时为0
+		 */
+		public long getPercentile(double quantile) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(quantile * count);
+			if (rank < 1) {
+				rank = 1;
+			}
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(upperBoundOf(i), max);
+				}
+			}
+			return max;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getMax() {
+			return max;
+		}
+
+		public double getMean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + ", mean=" + Math.round(getMean()) + ", p50=" + getPercentile(0.5)
+					+ ", p99=" + getPercentile(0.99) + ", p999=" + getPercentile(0.999) + ", max=" + max;
+		}
+	}
+}
@@ -0,0 +1,544 @@
+package com.x.http.metrics;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 按目标地址和路径模板统计请求的客户端：耗时直方图、状态码、请求和响应内容字节数
+ * <p>
+ * 路径中的数字段和长的十六进制段(如UUID)替换为{id}，也可以指定计算路径模板的函数。
+ * 统计占用固定内存：路径模板(含各地址的{other})和目标地址数都有上限，路径模板超过上限后计入该地址的{other}，
+ * 再超过或目标地址数超过上限时计入*的{other}。
+ * 使用默认规则时，带ID的路径逐段与该地址已有的模板比较，不拼接字符串，路径模板已存在时记录不分配对象；
+ * 长度未知(分块传输)的响应需要包装内容流来计算字节数
+ *
+ * @author M
+ */
+public class MetricsHttpClient extends CloseableHttpClient {
+
+	/**
+	 * 路径模板数超过上限后使用
+	 */
+	private static final String OTHER = "{other}";
+
+	/**
+	 * 路径模板中代替ID段的占位符
+	 */
+	private static final String ID = "{id}";
+
+	/**
+	 * 状态码计数的上限，超出的计入0
+	 */
+	private static final int MAX_STATUS = 600;
+
+	private final CloseableHttpClient backend;
+
+	private final Function<HttpRequest, String> templateFunction;
+
+	private final int maxRoutes;
+
+	/**
+	 * key为请求的目标地址，同一地址带默认端口和不带端口时对应同一个统计
+	 */
+	private final ConcurrentMap<HttpHost, HostMetrics> hosts = new ConcurrentHashMap<HttpHost, HostMetrics>();
+
+	/**
+	 * 已创建的路径模板数，包括各地址的{other}
+	 */
+	private final AtomicInteger routeCount = new AtomicInteger();
+
+	private final AtomicInteger hostCount = new AtomicInteger();
+
+	/**
+	 * 路径模板或目标地址数超过上限后共用的统计
+	 */
+	private final HostMetrics overflowHost = new HostMetrics("*");
+
+	/**
+	 * 使用默认的路径模板规则，最多统计256个路径模板
+	 * 
+	 * @param backend
+	 */
+	public MetricsHttpClient(CloseableHttpClient backend) {
+		this(backend, null, 256);
+	}
+
+	/**
+	 * @param backend
+	 * @param templateFunction 计算请求的路径模板，为null时使用默认规则
+	 * @param maxRoutes        路径模板数上限，也是目标地址数上限
+	 */
+	public MetricsHttpClient(CloseableHttpClient backend, Function<HttpRequest, String> templateFunction, int maxRoutes) {
+		this.backend = backend;
+		this.templateFunction = templateFunction;
+		this.maxRoutes = maxRoutes;
+	}
+
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+			throws IOException, ClientProtocolException {
+		if (target == null) {
+			return backend.execute(target, request, context);
+		}
+		RouteMetrics route = routeOf(target, request);
+		if (request instanceof HttpEntityEnclosingRequest) {
+			HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+			if (entity != null && entity.getContentLength() > 0) {
+				route.bytesSent.add(entity.getContentLength());
+			}
+		}
+		long start = System.nanoTime();
+		CloseableHttpResponse response;
+		try {
+			response = backend.execute(target, request, context);
+		} catch (IOException e) {
+			route.errors.increment();
+			throw e;
+		}
+		route.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+		int status = response.getStatusLine().getStatusCode();
+		route.statusCounts.incrementAndGet(status >= 0 && status < MAX_STATUS ? status : 0);
+		HttpEntity entity = response.getEntity();
+		if (entity != null) {
+			long length = entity.getContentLength();
+			if (length >= 0) {
+				route.bytesReceived.add(length);
+			} else {
+				response.setEntity(new CountingEntity(entity, route.bytesReceived));
+			}
+		}
+		return response;
+	}
+
+	private RouteMetrics routeOf(HttpHost target, HttpRequest request) {
+		HostMetrics host = hostOf(target);
+		if (host == overflowHost) {
+			return host.other();
+		}
+		if (templateFunction != null) {
+			String template = templateFunction.apply(request);
+			return host.route(template == null ? OTHER : template);
+		}
+		String path = rawPath(request);
+		if (!hasId(path)) {
+			return host.route(path);
+		}
+		RouteMetrics route = host.match(path);
+		if (route == null) {
+			if (routeCount.get() >= maxRoutes) {
+				return host.other();
+			}
+			route = host.route(template(path));
+			host.addIdRoute(route);
+		}
+		return route;
+	}
+
+	private HostMetrics hostOf(HttpHost target) {
+		HostMetrics host = hosts.get(target);
+		if (host == null) {
+			int port = target.getPort();
+			if (port < 0) {
+				port = "https".equalsIgnoreCase(target.getSchemeName()) ? 443 : 80;
+			}
+			HttpHost normalized = new HttpHost(target.getHostName(), port, target.getSchemeName());
+			host = hosts.get(normalized);
+			if (host == null) {
+				if (hostCount.get() >= maxRoutes) {
+					return overflowHost;
+				}
+				HostMetrics created = new HostMetrics(normalized.toURI());
+				host = hosts.putIfAbsent(normalized, created);
+				if (host == null) {
+					host = created;
+					hostCount.incrementAndGet();
+				}
+			}
+			hosts.putIfAbsent(target, host);
+		}
+		return host;
+	}
+
+	private static String rawPath(HttpRequest request) {
+		String path;
+		if (request instanceof HttpUriRequest) {
+			path = ((HttpUriRequest) request).getURI().getRawPath();
+		} else {
+			path = request.getRequestLine().getUri();
+			int query = path.indexOf('?');
+			if (query >= 0) {
+				path = path.substring(0, query);
+			}
+			int scheme = path.indexOf("://");
+			if (scheme >= 0) {
+				int slash = path.indexOf('/', scheme + 3);
+				path = slash < 0 ? "/" : path.substring(slash);
+			}
+		}
+		return path == null || path.isEmpty() ? "/" : path;
+	}
+
+	/**
+	 * 数字段和16位以上的十六进制段(可含-)替换为{id}
+	 */
+	static String template(String path) {
+		StringBuilder template = null;
+		int start = 0;
+		while (start < path.length()) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = path.length();
+			}
+			if (isId(path, start, end)) {
+				if (template == null) {
+					template = new StringBuilder(path.length()).append(path, 0, start);
+				}
+				template.append(ID);
+			} else if (template != null) {
+				template.append(path, start, end);
+			}
+			if (end < path.length() && template != null) {
+				template.append('/');
+			}
+			start = end + 1;
+		}
+		return template == null ? path : template.toString();
+	}
+
+	/**
+	 * 路径中是否有会被替换为{id}的段
+	 */
+	private static boolean hasId(String path) {
+		int start = 0;
+		while (start < path.length()) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = path.length();
+			}
+			if (isId(path, start, end)) {
+				return true;
+			}
+			start = end + 1;
+		}
+		return false;
+	}
+
+	/**
+	 * 逐段比较，不拼接字符串：路径按默认规则得到的模板是否为template
+	 */
+	static boolean matches(String template, String path) {
+		int t = 0;
+		int p = 0;
+		while (true) {
+			int templateEnd = template.indexOf('/', t);
+			if (templateEnd < 0) {
+				templateEnd = template.length();
+			}
+			int pathEnd = path.indexOf('/', p);
+			if (pathEnd < 0) {
+				pathEnd = path.length();
+			}
+			if (templateEnd - t == ID.length() && template.startsWith(ID, t)) {
+				if (!isId(path, p, pathEnd)) {
+					return false;
+				}
+			} else if (templateEnd - t != pathEnd - p || !template.regionMatches(t, path, p, pathEnd - p) || isId(path, p, pathEnd)) {
+				return false;
+			}
+			if (templateEnd == template.length() || pathEnd == path.length()) {
+				return templateEnd == template.length() && pathEnd == path.length();
+			}
+			t = templateEnd + 1;
+			p = pathEnd + 1;
+		}
+	}
+
+	private static boolean isId(String path, int start, int end) {
+		if (start == end) {
+			return false;
+		}
+		boolean digits = true;
+		boolean hex = true;
+		for (int i = start; i < end; i++) {
+			char c = path.charAt(i);
+			if (c < '0' || c > '9') {
+				digits = false;
+				if (!(c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F' || c == '-')) {
+					hex = false;
+					break;
+				}
+			}
+		}
+		return digits || hex && end - start >= 16;
+	}
+
+	/**
+	 * 一个目标地址的统计
+	 */
+	private class HostMetrics {
+
+		private final String name;
+
+		private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<String, RouteMetrics>();
+
+		/**
+		 * 含{id}的路径模板，带ID的请求路径与其逐段比较，新增时整体替换
+		 */
+		private volatile RouteMetrics[] idRoutes = new RouteMetrics[0];
+
+		HostMetrics(String name) {
+			this.name = name;
+		}
+
+		RouteMetrics route(String template) {
+			RouteMetrics route = routes.get(template);
+			if (route == null) {
+				if (OTHER.equals(template)) {
+					return other();
+				}
+				if (routeCount.get() >= maxRoutes) {
+					return other();
+				}
+				route = create(template);
+			}
+			return route;
+		}
+
+		/**
+		 * 该地址的{other}；路径模板数已达上限、无法再为该地址创建时使用*的{other}
+		 */
+		RouteMetrics other() {
+			RouteMetrics route = routes.get(OTHER);
+			if (route == null) {
+				if (this != overflowHost && routeCount.get() >= maxRoutes) {
+					return overflowHost.other();
+				}
+				route = create(OTHER);
+			}
+			return route;
+		}
+
+		private RouteMetrics create(String template) {
+			RouteMetrics created = new RouteMetrics(name, template);
+			RouteMetrics route = routes.putIfAbsent(template, created);
+			if (route == null) {
+				route = created;
+				if (this != overflowHost) {
+					routeCount.incrementAndGet();
+				}
+			}
+			return route;
+		}
+
+		RouteMetrics match(String path) {
+			for (RouteMetrics route : idRoutes) {
+				if (matches(route.path, path)) {
+					return route;
+				}
+			}
+			return null;
+		}
+
+		synchronized void addIdRoute(RouteMetrics route) {
+			if (route.path.indexOf(ID) < 0 || !name.equals(route.host)) {
+				// 计入{other}的不加入
+				return;
+			}
+			RouteMetrics[] current = idRoutes;
+			for (RouteMetrics existing : current) {
+				if (existing == route) {
+					return;
+				}
+			}
+			RouteMetrics[] next = Arrays.copyOf(current, current.length + 1);
+			next[current.length] = route;
+			idRoutes = next;
+		}
+	}
+
+	/**
+	 * 一个路径模板的统计，记录时不分配对象
+	 */
+	private static class RouteMetrics {
+
+		private final String host;
+
+		private final String path;
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+
+		private final LongAdder errors = new LongAdder();
+
+		private final LongAdder bytesSent = new LongAdder();
+
+		private final LongAdder bytesReceived = new LongAdder();
+
+		RouteMetrics(String host, String path) {
+			this.host = host;
+			this.path = path;
+		}
+
+		HttpRouteStats snapshot() {
+			Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+			for (int i = 0; i < MAX_STATUS; i++) {
+				long count = statusCounts.get(i);
+				if (count > 0) {
+					counts.put(i, count);
+				}
+			}
+			return new HttpRouteStats(host, path, latency.snapshot(), counts, errors.sum(), bytesSent.sum(), bytesReceived.sum());
+		}
+
+		void reset() {
+			latency.reset();
+			for (int i = 0; i < MAX_STATUS; i++) {
+				statusCounts.set(i, 0);
+			}
+			errors.reset();
+			bytesSent.reset();
+			bytesReceived.reset();
+		}
+	}
+
+	/**
+	 * 长度未知的响应内容，读取时计算字节数
+	 */
+	private static class CountingEntity extends HttpEntityWrapper {
+
+		private final LongAdder bytes;
+
+		CountingEntity(HttpEntity entity, LongAdder bytes) {
+			super(entity);
+			this.bytes = bytes;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new FilterInputStream(wrappedEntity.getContent()) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b >= 0) {
+						bytes.increment();
+					}
+					return b;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int n = super.read(b, off, len);
+					if (n > 0) {
+						bytes.add(n);
+					}
+					return n;
+				}
+			};
+		}
+
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			wrappedEntity.writeTo(new FilterOutputStream(outstream) {
+				@Override
+				public void write(int b) throws IOException {
+					out.write(b);
+					bytes.increment();
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+					bytes.add(len);
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return 按目标地址和路径模板排序的统计快照
+	 */
+	public List<HttpRouteStats> getRouteStats() {
+		List<HttpRouteStats> stats = new ArrayList<HttpRouteStats>();
+		for (RouteMetrics route : routes()) {
+			if (route.host.equals(overflowHost.name) && route.latency.getCount() == 0 && route.errors.sum() == 0) {
+				// 没有超过上限时不输出*的{other}
+				continue;
+			}
+			stats.add(route.snapshot());
+		}
+		Collections.sort(stats, new Comparator<HttpRouteStats>() {
+			public int compare(HttpRouteStats a, HttpRouteStats b) {
+				int result = a.getHost().compareTo(b.getHost());
+				return result != 0 ? result : a.getPath().compareTo(b.getPath());
+			}
+		});
+		return stats;
+	}
+
+	/**
+	 * 清空统计数据，已有的路径模板保留
+	 */
+	public void reset() {
+		for (RouteMetrics route : routes()) {
+			route.reset();
+		}
+	}
+
+	private List<RouteMetrics> routes() {
+		List<RouteMetrics> routes = new ArrayList<RouteMetrics>();
+		for (HostMetrics host : new HashSet<HostMetrics>(hosts.values())) {
+			routes.addAll(host.routes.values());
+		}
+		routes.addAll(overflowHost.routes.values());
+		return routes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		backend.close();
+	}
+
+	@Deprecated
+	@Override
+	public HttpParams getParams() {
+		return backend.getParams();
+	}
+
+	@Deprecated
+	@Override
+	public ClientConnectionManager getConnectionManager() {
+		return backend.getConnectionManager();
+	}
+}
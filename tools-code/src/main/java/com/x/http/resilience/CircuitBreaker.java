@@ -0,0 +1,186 @@
+package com.x.http.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * 单个目标地址的熔断器
+ * <p>
+ * 关闭：统计最近windowSize个请求的失败率，达到阈值后打开；
+ * 打开：请求直接失败，openMillis后进入半开；
+ * 半开：放行halfOpenProbes个试探请求，全部成功则关闭，任一失败则重新打开
+ *
+ * @author M
+ */
+public class CircuitBreaker {
+	private static Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String host;
+
+	private final ResiliencePolicy policy;
+
+	private final List<CircuitBreakerListener> listeners;
+
+	/**
+	 * 最近请求的结果，true为失败
+	 */
+	private final boolean[] window;
+
+	private int windowIndex;
+
+	private int calls;
+
+	private int failures;
+
+	private State state = State.CLOSED;
+
+	private long openedAt;
+
+	private int probesStarted;
+
+	private int probesSucceeded;
+
+	CircuitBreaker(String host, ResiliencePolicy policy, List<CircuitBreakerListener> listeners) {
+		this.host = host;
+		this.policy = policy;
+		this.listeners = listeners;
+		this.window = new boolean[Math.max(1, policy.getWindowSize())];
+	}
+
+	/**
+	 * @return 是否允许发出请求，允许时必须再调用onSuccess或onFailure
+	 */
+	boolean tryAcquire() {
+		State from;
+		synchronized (this) {
+			if (state == State.CLOSED) {
+				return true;
+			}
+			if (state == State.OPEN) {
+				if (System.currentTimeMillis() - openedAt < policy.getOpenMillis()) {
+					return false;
+				}
+				from = transition(State.HALF_OPEN);
+			} else {
+				from = null;
+			}
+			if (probesStarted >= Math.max(1, policy.getHalfOpenProbes())) {
+				return false;
+			}
+			probesStarted++;
+		}
+		fire(from, State.HALF_OPEN);
+		return true;
+	}
+
+	void onSuccess() {
+		State from = null;
+		synchronized (this) {
+			if (state == State.HALF_OPEN) {
+				if (++probesSucceeded >= Math.max(1, policy.getHalfOpenProbes())) {
+					from = transition(State.CLOSED);
+				}
+			} else if (state == State.CLOSED) {
+				record(false);
+			}
+		}
+		fire(from, State.CLOSED);
+	}
+
+	void onFailure() {
+		State from = null;
+		synchronized (this) {
+			if (state == State.HALF_OPEN) {
+				from = transition(State.OPEN);
+			} else if (state == State.CLOSED) {
+				record(true);
+				if (calls >= policy.getMinimumCalls() && failures >= calls * policy.getFailureRateThreshold()) {
+					from = transition(State.OPEN);
+				}
+			}
+		}
+		fire(from, State.OPEN);
+	}
+
+	/**
+	 * 请求被调用方中止，不计入统计，释放半开状态的试探名额
+	 */
+	synchronized void onCancel() {
+		if (state == State.HALF_OPEN && probesStarted > 0) {
+			probesStarted--;
+		}
+	}
+
+	private void record(boolean failure) {
+		if (calls == window.length) {
+			if (window[windowIndex]) {
+				failures--;
+			}
+		} else {
+			calls++;
+		}
+		window[windowIndex] = failure;
+		if (failure) {
+			failures++;
+		}
+		windowIndex = (windowIndex + 1) % window.length;
+	}
+
+	/**
+	 * @return 原状态
+	 */
+	private State transition(State to) {
+		State from = state;
+		state = to;
+		probesStarted = 0;
+		probesSucceeded = 0;
+		if (to == State.OPEN) {
+			openedAt = System.currentTimeMillis();
+		} else if (to == State.CLOSED) {
+			calls = 0;
+			failures = 0;
+			windowIndex = 0;
+		}
+		return from;
+	}
+
+	private void fire(State from, State to) {
+		if (from == null || from == to) {
+			return;
+		}
+		log.info("circuit breaker of {} changed from {} to {}", host, from, to);
+		for (CircuitBreakerListener listener : listeners) {
+			try {
+				listener.onStateChange(host, from, to);
+			} catch (RuntimeException e) {
+				log.warn("circuit breaker listener failed", e);
+			}
+		}
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return 关闭状态下最近请求的失败率
+	 */
+	public synchronized double getFailureRate() {
+		return calls == 0 ? 0 : (double) failures / calls;
+	}
+
+	@Override
+	public String toString() {
+		return "CircuitBreaker [host=" + host + ", state=" + getState() + ", failureRate=" + getFailureRate() + "]";
+	}
+}
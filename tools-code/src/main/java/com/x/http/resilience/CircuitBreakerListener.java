@@ -0,0 +1,16 @@
+package com.x.http.resilience;
+
+/**
+ * 熔断器状态变化监听
+ */
+public interface CircuitBreakerListener {
+
+	/**
+	 * 在状态变化的线程中调用，不要做耗时操作
+	 *
+	 * @param host 目标地址
+	 * @param from 原状态
+	 * @param to 新状态
+	 */
+	void onStateChange(String host, CircuitBreaker.State from, CircuitBreaker.State to);
+}
@@ -0,0 +1,15 @@
+package com.x.http.resilience;
+
+import com.x.http.HttpClientException;
+
+/**
+ * 熔断器打开，请求没有发出
+ */
+public class CircuitBreakerOpenException extends HttpClientException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CircuitBreakerOpenException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,375 @@
+package com.x.http.resilience;
+
+import com.x.http.metrics.LatencyHistogram;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.AbstractExecutionAwareRequest;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对冲请求客户端：幂等请求在按目标地址统计的响应时间分位(默认p95)内没有返回时，再发出一个相同的请求，
+ * 先返回的响应胜出，另一个请求被中止
+ * <p>
+ * 对冲请求数受预算限制(默认不超过请求数的5%)；统计到足够的响应时间之前不发对冲请求。
+ * 原请求在调用线程上执行，对冲请求在后台线程上执行
+ *
+ * @author M
+ */
+public class HedgingHttpClient extends CloseableHttpClient {
+
+	/**
+	 * 预算以千分之一个请求为单位
+	 */
+	private static final long TOKEN_UNIT = 1000;
+
+	private final CloseableHttpClient backend;
+
+	private final HedgingPolicy policy;
+
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	private final ConcurrentMap<String, HostLatency> latencies = new ConcurrentHashMap<String, HostLatency>();
+
+	private final AtomicLong budget;
+
+	private final LongAdder requestCount = new LongAdder();
+
+	private final LongAdder hedgeCount = new LongAdder();
+
+	private final LongAdder hedgeWinCount = new LongAdder();
+
+	private final LongAdder budgetExhaustedCount = new LongAdder();
+
+	public HedgingHttpClient(CloseableHttpClient backend, HedgingPolicy policy) {
+		this.backend = backend;
+		this.policy = policy;
+		this.budget = new AtomicLong(policy.getMaxBurst() * TOKEN_UNIT);
+		this.scheduler = new ScheduledThreadPoolExecutor(Math.max(1, policy.getThreads()), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "http-hedging-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+			throws IOException, ClientProtocolException {
+		if (!(request instanceof AbstractExecutionAwareRequest) || !ResilientHttpClient.isRetryable(request)) {
+			return backend.execute(target, request, context);
+		}
+		requestCount.increment();
+		deposit();
+		HostLatency latency = latencyOf(target);
+		long delay = latency.delayMillis;
+		long start = System.nanoTime();
+		if (delay < 0) {
+			CloseableHttpResponse response = backend.execute(target, request, context);
+			latency.record(System.nanoTime() - start);
+			return response;
+		}
+		Hedge hedge = new Hedge(target, (AbstractExecutionAwareRequest) request, latency);
+		hedge.scheduled = scheduler.schedule(hedge, delay, TimeUnit.MILLISECONDS);
+		CloseableHttpResponse response;
+		try {
+			response = backend.execute(target, request, context);
+		} catch (IOException e) {
+			return hedge.onPrimaryFailure(e);
+		}
+		latency.record(System.nanoTime() - start);
+		if (hedge.primaryWins()) {
+			return response;
+		}
+		response.close();
+		return hedge.awaitWinner();
+	}
+
+	private void deposit() {
+		long max = policy.getMaxBurst() * TOKEN_UNIT;
+		long add = (long) (policy.getBudgetRatio() * TOKEN_UNIT);
+		long current;
+		while ((current = budget.get()) < max && !budget.compareAndSet(current, Math.min(max, current + add))) {
+			// 其他线程修改了预算，重试
+		}
+	}
+
+	private boolean withdraw() {
+		long current;
+		do {
+			current = budget.get();
+			if (current < TOKEN_UNIT) {
+				return false;
+			}
+		} while (!budget.compareAndSet(current, current - TOKEN_UNIT));
+		return true;
+	}
+
+	private HostLatency latencyOf(HttpHost target) {
+		String host = target == null ? "" : target.toURI();
+		HostLatency latency = latencies.get(host);
+		if (latency == null) {
+			HostLatency created = new HostLatency();
+			latency = latencies.putIfAbsent(host, created);
+			if (latency == null) {
+				latency = created;
+			}
+		}
+		return latency;
+	}
+
+	/**
+	 * 一次请求的对冲状态
+	 */
+	private class Hedge implements Runnable {
+
+		private static final int PENDING = 0;
+
+		private static final int PRIMARY_WON = 1;
+
+		private static final int HEDGE_WON = 2;
+
+		private final HttpHost target;
+
+		private final AbstractExecutionAwareRequest primary;
+
+		private final HostLatency latency;
+
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+
+		/**
+		 * 对冲请求胜出时为其响应，否则为null
+		 */
+		private final CompletableFuture<CloseableHttpResponse> result = new CompletableFuture<CloseableHttpResponse>();
+
+		/**
+		 * 对冲任务开始执行或原请求失败后不再执行，二者只有一个能设置成功
+		 */
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		private volatile ScheduledFuture<?> scheduled;
+
+		private volatile HttpUriRequest copy;
+
+		Hedge(HttpHost target, AbstractExecutionAwareRequest primary, HostLatency latency) {
+			this.target = target;
+			this.primary = primary;
+			this.latency = latency;
+		}
+
+		public void run() {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				if (state.get() != PENDING) {
+					return;
+				}
+				if (!withdraw()) {
+					budgetExhaustedCount.increment();
+					return;
+				}
+				copy = RequestBuilder.copy(primary).build();
+				// 先设置copy再检查状态，与primaryWins中先改状态再读取copy对应，保证两边至少一方看到对方
+				if (state.get() != PENDING) {
+					return;
+				}
+				hedgeCount.increment();
+				long start = System.nanoTime();
+				CloseableHttpResponse response = backend.execute(target, copy);
+				latency.record(System.nanoTime() - start);
+				if (state.compareAndSet(PENDING, HEDGE_WON)) {
+					hedgeWinCount.increment();
+					primary.abort();
+					result.complete(response);
+				} else {
+					response.close();
+				}
+			} catch (IOException e) {
+				result.completeExceptionally(e);
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			} finally {
+				result.complete(null);
+			}
+		}
+
+		/**
+		 * @return 原请求是否胜出，胜出时中止对冲请求
+		 */
+		boolean primaryWins() {
+			if (!state.compareAndSet(PENDING, PRIMARY_WON)) {
+				return false;
+			}
+			scheduled.cancel(false);
+			HttpUriRequest hedging = copy;
+			if (hedging != null) {
+				hedging.abort();
+			}
+			return true;
+		}
+
+		/**
+		 * 原请求失败(包括被胜出的对冲请求中止)时，有对冲请求在执行则等待其结果
+		 */
+		CloseableHttpResponse onPrimaryFailure(IOException e) throws IOException {
+			if (claimed.compareAndSet(false, true)) {
+				// 对冲请求还没有开始，不再发出
+				scheduled.cancel(false);
+				throw e;
+			}
+			CloseableHttpResponse response = awaitResult();
+			if (response == null) {
+				throw e;
+			}
+			return response;
+		}
+
+		CloseableHttpResponse awaitWinner() throws IOException {
+			CloseableHttpResponse response = awaitResult();
+			if (response == null) {
+				throw new IOException("hedged request finished without response");
+			}
+			return response;
+		}
+
+		private CloseableHttpResponse awaitResult() throws IOException {
+			try {
+				CloseableHttpResponse response = result.get();
+				if (state.get() == HEDGE_WON) {
+					// 原请求被中止，恢复后调用方可以再次使用
+					primary.reset();
+				}
+				return response;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for hedged request");
+			} catch (ExecutionException e) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * 目标地址的响应时间统计和当前的对冲等待时间
+	 */
+	private class HostLatency {
+
+		private final LatencyHistogram histogram = new LatencyHistogram();
+
+		/**
+		 * 对冲等待时间(毫秒)，小于0时不对冲
+		 */
+		private volatile long delayMillis = -1;
+
+		private volatile long refreshedAt = System.currentTimeMillis();
+
+		void record(long nanos) {
+			histogram.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+			long now = System.currentTimeMillis();
+			if ((delayMillis < 0 || now - refreshedAt >= policy.getRefreshMillis()) && histogram.getCount() >= policy.getMinSamples()) {
+				refresh(now);
+			}
+		}
+
+		private synchronized void refresh(long now) {
+			if (histogram.getCount() < policy.getMinSamples()) {
+				return;
+			}
+			long percentile = TimeUnit.MICROSECONDS.toMillis(histogram.snapshot().getPercentile(policy.getPercentile()));
+			delayMillis = Math.max(policy.getMinDelayMillis(), percentile);
+			histogram.reset();
+			refreshedAt = now;
+		}
+	}
+
+	/**
+	 * @return 按目标地址的对冲等待时间(毫秒)，-1表示样本不足、暂不对冲
+	 */
+	public Map<String, Long> getHedgeDelays() {
+		Map<String, Long> delays = new TreeMap<String, Long>();
+		for (Map.Entry<String, HostLatency> entry : latencies.entrySet()) {
+			delays.put(entry.getKey(), entry.getValue().delayMillis);
+		}
+		return delays;
+	}
+
+	/**
+	 * @return 可以对冲的请求数
+	 */
+	public long getRequestCount() {
+		return requestCount.sum();
+	}
+
+	/**
+	 * @return 发出的对冲请求数
+	 */
+	public long getHedgeCount() {
+		return hedgeCount.sum();
+	}
+
+	/**
+	 * @return 对冲请求先返回的次数
+	 */
+	public long getHedgeWinCount() {
+		return hedgeWinCount.sum();
+	}
+
+	/**
+	 * @return 因预算不足没有发出对冲请求的次数
+	 */
+	public long getBudgetExhaustedCount() {
+		return budgetExhaustedCount.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "HedgingHttpClient [requests=" + getRequestCount() + ", hedges=" + getHedgeCount() + ", hedgeWins=" + getHedgeWinCount()
+				+ ", budgetExhausted=" + getBudgetExhaustedCount() + ", delays=" + getHedgeDelays() + "]";
+	}
+
+	@Override
+	public void close() throws IOException {
+		scheduler.shutdownNow();
+		backend.close();
+	}
+
+	@Deprecated
+	@Override
+	public HttpParams getParams() {
+		return backend.getParams();
+	}
+
+	@Deprecated
+	@Override
+	public ClientConnectionManager getConnectionManager() {
+		return backend.getConnectionManager();
+	}
+}
@@ -0,0 +1,100 @@
+package com.x.http.resilience;
+
+/**
+ * 对冲请求配置
+ *
+ * @author M
+ */
+public class HedgingPolicy {
+
+	/**
+	 * 按该分位的响应时间作为发出对冲请求的等待时间，0~1
+	 */
+	private double percentile = 0.95;
+
+	/**
+	 * 等待时间下限(毫秒)
+	 */
+	private long minDelayMillis = 5;
+
+	/**
+	 * 统计到的响应数不足该值时不发对冲请求
+	 */
+	private int minSamples = 100;
+
+	/**
+	 * 重新计算等待时间的间隔(毫秒)，每次重新计算后清空统计，使等待时间跟随最近的响应时间
+	 */
+	private long refreshMillis = 10000;
+
+	/**
+	 * 对冲请求数占请求数的比例上限
+	 */
+	private double budgetRatio = 0.05;
+
+	/**
+	 * 预算允许连续发出的对冲请求数
+	 */
+	private int maxBurst = 10;
+
+	/**
+	 * 发出对冲请求的线程数
+	 */
+	private int threads = 8;
+
+	public double getPercentile() {
+		return percentile;
+	}
+
+	public void setPercentile(double percentile) {
+		this.percentile = percentile;
+	}
+
+	public long getMinDelayMillis() {
+		return minDelayMillis;
+	}
+
+	public void setMinDelayMillis(long minDelayMillis) {
+		this.minDelayMillis = minDelayMillis;
+	}
+
+	public int getMinSamples() {
+		return minSamples;
+	}
+
+	public void setMinSamples(int minSamples) {
+		this.minSamples = minSamples;
+	}
+
+	public long getRefreshMillis() {
+		return refreshMillis;
+	}
+
+	public void setRefreshMillis(long refreshMillis) {
+		this.refreshMillis = refreshMillis;
+	}
+
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	public void setBudgetRatio(double budgetRatio) {
+		this.budgetRatio = budgetRatio;
+	}
+
+	public int getMaxBurst() {
+		return maxBurst;
+	}
+
+	public void setMaxBurst(int maxBurst) {
+		this.maxBurst = maxBurst;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+}
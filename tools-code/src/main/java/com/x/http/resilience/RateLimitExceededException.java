@@ -0,0 +1,15 @@
+package com.x.http.resilience;
+
+import com.x.http.HttpClientException;
+
+/**
+ * 超过目标地址的请求速率或并发数限制，请求没有发出
+ */
+public class RateLimitExceededException extends HttpClientException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RateLimitExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,89 @@
+package com.x.http.resilience;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按目标地址生效的速率和并发数限制
+ *
+ * @author M
+ */
+public class RateLimitPolicy {
+
+	/**
+	 * 每秒请求数，小于等于0为不限制
+	 */
+	private double permitsPerSecond = -1;
+
+	/**
+	 * 空闲后允许连续发出的请求数
+	 */
+	private int burst = 10;
+
+	/**
+	 * 同时进行中的请求数(到响应关闭为止)，小于等于0为不限制
+	 */
+	private int maxConcurrent = -1;
+
+	/**
+	 * 超过限制时排队等待的时间(毫秒)，0为直接失败
+	 */
+	private long timeoutMillis = 0;
+
+	/**
+	 * 单独设置的目标地址，如https://api.x.com
+	 */
+	private Map<String, RateLimitPolicy> hostPolicies = new HashMap<String, RateLimitPolicy>();
+
+	public double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	public void setPermitsPerSecond(double permitsPerSecond) {
+		this.permitsPerSecond = permitsPerSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	public void setBurst(int burst) {
+		this.burst = burst;
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	public void setMaxConcurrent(int maxConcurrent) {
+		this.maxConcurrent = maxConcurrent;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public Map<String, RateLimitPolicy> getHostPolicies() {
+		return hostPolicies;
+	}
+
+	public void setHostPolicies(Map<String, RateLimitPolicy> hostPolicies) {
+		this.hostPolicies = hostPolicies;
+	}
+
+	/**
+	 * 单独设置一个目标地址的限制，其他地址使用本配置
+	 * 
+	 * @param host   如https://api.x.com
+	 * @param policy
+	 * @return
+	 */
+	public RateLimitPolicy setHostPolicy(String host, RateLimitPolicy policy) {
+		this.hostPolicies.put(host, policy);
+		return this;
+	}
+}
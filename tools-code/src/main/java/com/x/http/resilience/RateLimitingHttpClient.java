@@ -0,0 +1,367 @@
+package com.x.http.resilience;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.EofSensorInputStream;
+import org.apache.http.conn.EofSensorWatcher;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按目标地址限制请求速率(令牌桶)和并发数(舱壁)的客户端，一个服务限流或变慢时不会占满调用线程、影响其他服务
+ * <p>
+ * 超过限制的请求按配置排队等待或直接抛出{@link RateLimitExceededException}；并发数在响应关闭时释放。
+ * 服务端返回429时按Retry-After暂停该地址的令牌桶
+ *
+ * @author M
+ */
+public class RateLimitingHttpClient extends CloseableHttpClient {
+	private static Logger log = LoggerFactory.getLogger(RateLimitingHttpClient.class);
+
+	private final CloseableHttpClient backend;
+
+	private final RateLimitPolicy policy;
+
+	/**
+	 * 单独设置的目标地址，key已规范化
+	 */
+	private final Map<String, RateLimitPolicy> hostPolicies = new HashMap<String, RateLimitPolicy>();
+
+	/**
+	 * key为请求的目标地址，同一地址带默认端口和不带端口时对应同一个限制
+	 */
+	private final ConcurrentMap<HttpHost, HostLimiter> limiters = new ConcurrentHashMap<HttpHost, HostLimiter>();
+
+	private final LongAdder permittedCount = new LongAdder();
+
+	private final LongAdder rejectedCount = new LongAdder();
+
+	private final LongAdder throttledCount = new LongAdder();
+
+	public RateLimitingHttpClient(CloseableHttpClient backend, RateLimitPolicy policy) {
+		this.backend = backend;
+		this.policy = policy;
+		for (Map.Entry<String, RateLimitPolicy> entry : policy.getHostPolicies().entrySet()) {
+			hostPolicies.put(normalize(HttpHost.create(entry.getKey())).toURI(), entry.getValue());
+		}
+	}
+
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+			throws IOException, ClientProtocolException {
+		HostLimiter limiter = target == null ? null : limiterOf(target);
+		if (limiter == null || (limiter.bucket == null && limiter.bulkhead == null)) {
+			return backend.execute(target, request, context);
+		}
+		limiter.acquire();
+		permittedCount.increment();
+		CloseableHttpResponse response;
+		try {
+			response = backend.execute(target, request, context);
+		} catch (IOException e) {
+			limiter.release();
+			throw e;
+		} catch (RuntimeException e) {
+			limiter.release();
+			throw e;
+		}
+		if (response.getStatusLine().getStatusCode() == 429) {
+			throttled(limiter, response);
+		}
+		if (limiter.bulkhead == null) {
+			return response;
+		}
+		if (response.getEntity() == null) {
+			// 没有响应内容，连接已经释放
+			limiter.release();
+			return response;
+		}
+		return new PermitResponse(response, new Permit(limiter));
+	}
+
+	private void throttled(HostLimiter limiter, CloseableHttpResponse response) {
+		throttledCount.increment();
+		long delayMillis = retryAfterMillis(response.getFirstHeader(HttpHeaders.RETRY_AFTER));
+		if (limiter.bucket != null && delayMillis > 0) {
+			log.warn("{} returned 429, pause {}ms", limiter.host, delayMillis);
+			limiter.bucket.pause(delayMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Retry-After为秒数或HTTP日期
+	 */
+	private static long retryAfterMillis(Header header) {
+		if (header == null) {
+			return -1;
+		}
+		String value = header.getValue().trim();
+		try {
+			return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+		} catch (NumberFormatException e) {
+			Date date = DateUtils.parseDate(value);
+			return date == null ? -1 : date.getTime() - System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * 与连接池路由一致：没有端口时使用协议默认端口
+	 */
+	private static HttpHost normalize(HttpHost target) {
+		int port = target.getPort();
+		if (port < 0) {
+			port = "https".equalsIgnoreCase(target.getSchemeName()) ? 443 : 80;
+		}
+		return new HttpHost(target.getHostName(), port, target.getSchemeName());
+	}
+
+	private HostLimiter limiterOf(HttpHost target) {
+		HostLimiter limiter = limiters.get(target);
+		if (limiter == null) {
+			// 带默认端口和不带端口的地址共用一个限制
+			HttpHost host = normalize(target);
+			limiter = limiters.get(host);
+			if (limiter == null) {
+				RateLimitPolicy hostPolicy = hostPolicies.get(host.toURI());
+				HostLimiter created = new HostLimiter(host.toURI(), hostPolicy == null ? policy : hostPolicy);
+				limiter = limiters.putIfAbsent(host, created);
+				if (limiter == null) {
+					limiter = created;
+				}
+			}
+			limiters.putIfAbsent(target, limiter);
+		}
+		return limiter;
+	}
+
+	/**
+	 * 一个目标地址的令牌桶和舱壁
+	 */
+	private class HostLimiter {
+
+		private final String host;
+
+		private final TokenBucket bucket;
+
+		private final Semaphore bulkhead;
+
+		private final int maxConcurrent;
+
+		private final long timeoutNanos;
+
+		HostLimiter(String host, RateLimitPolicy policy) {
+			this.host = host;
+			this.bucket = policy.getPermitsPerSecond() > 0 ? new TokenBucket(policy.getPermitsPerSecond(), policy.getBurst()) : null;
+			this.maxConcurrent = policy.getMaxConcurrent();
+			this.bulkhead = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+			this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, policy.getTimeoutMillis()));
+		}
+
+		/**
+		 * 先占用并发数再取令牌，取不到令牌时退回并发数；两者共用等待时间
+		 */
+		void acquire() throws InterruptedIOException {
+			long deadline = System.nanoTime() + timeoutNanos;
+			boolean acquired = false;
+			try {
+				if (bulkhead != null) {
+					if (!(timeoutNanos == 0 ? bulkhead.tryAcquire() : bulkhead.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS))) {
+						reject("concurrent requests of " + host + " exceed " + maxConcurrent);
+					}
+					acquired = true;
+				}
+				if (bucket != null && !(timeoutNanos == 0 ? bucket.tryAcquire()
+						: bucket.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))) {
+					release();
+					reject("request rate of " + host + " exceeds limit");
+				}
+			} catch (InterruptedException e) {
+				if (acquired) {
+					release();
+				}
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting for rate limit of " + host);
+			}
+		}
+
+		void release() {
+			if (bulkhead != null) {
+				bulkhead.release();
+			}
+		}
+
+		int getInFlight() {
+			return bulkhead == null ? 0 : maxConcurrent - bulkhead.availablePermits();
+		}
+
+		private void reject(String message) {
+			rejectedCount.increment();
+			throw new RateLimitExceededException(message);
+		}
+	}
+
+	/**
+	 * 一个请求占用的并发数，只释放一次
+	 */
+	private static class Permit implements EofSensorWatcher {
+
+		private final HostLimiter limiter;
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		Permit(HostLimiter limiter) {
+			this.limiter = limiter;
+		}
+
+		void release() {
+			if (released.compareAndSet(false, true)) {
+				limiter.release();
+			}
+		}
+
+		public boolean eofDetected(InputStream wrapped) {
+			release();
+			return true;
+		}
+
+		public boolean streamClosed(InputStream wrapped) {
+			release();
+			return true;
+		}
+
+		public boolean streamAbort(InputStream wrapped) {
+			release();
+			return true;
+		}
+	}
+
+	/**
+	 * 响应内容读完、响应内容流关闭或响应关闭时释放并发数，只消费内容不关闭响应也能释放
+	 */
+	private static class PermitResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+		private final CloseableHttpResponse response;
+
+		private final Permit permit;
+
+		PermitResponse(CloseableHttpResponse response, final Permit permit) {
+			super(response.getStatusLine());
+			setHeaders(response.getAllHeaders());
+			if (response.getLocale() != null) {
+				setLocale(response.getLocale());
+			}
+			setEntity(new HttpEntityWrapper(response.getEntity()) {
+				@Override
+				public InputStream getContent() throws IOException {
+					return new EofSensorInputStream(wrappedEntity.getContent(), permit);
+				}
+
+				@Override
+				public void writeTo(OutputStream outstream) throws IOException {
+					try {
+						wrappedEntity.writeTo(outstream);
+					} finally {
+						permit.release();
+					}
+				}
+			});
+			this.response = response;
+			this.permit = permit;
+		}
+
+		public void close() throws IOException {
+			try {
+				response.close();
+			} finally {
+				permit.release();
+			}
+		}
+	}
+
+	/**
+	 * @return 按目标地址的进行中请求数，只包含限制了并发数的地址
+	 */
+	public Map<String, Integer> getInFlight() {
+		Map<String, Integer> inFlight = new TreeMap<String, Integer>();
+		for (HostLimiter limiter : limiters.values()) {
+			if (limiter.bulkhead != null && !inFlight.containsKey(limiter.host)) {
+				inFlight.put(limiter.host, limiter.getInFlight());
+			}
+		}
+		return inFlight;
+	}
+
+	/**
+	 * @return 通过限制发出的请求数，不含不受限制的地址
+	 */
+	public long getPermittedCount() {
+		return permittedCount.sum();
+	}
+
+	/**
+	 * @return 超过限制没有发出的请求数
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * @return 服务端返回429的次数
+	 */
+	public long getThrottledCount() {
+		return throttledCount.sum();
+	}
+
+	public RateLimitPolicy getPolicy() {
+		return policy;
+	}
+
+	@Override
+	public String toString() {
+		return "RateLimitingHttpClient [permitted=" + getPermittedCount() + ", rejected=" + getRejectedCount() + ", throttled="
+				+ getThrottledCount() + ", inFlight=" + getInFlight() + "]";
+	}
+
+	@Override
+	public void close() throws IOException {
+		backend.close();
+	}
+
+	@Deprecated
+	@Override
+	public HttpParams getParams() {
+		return backend.getParams();
+	}
+
+	@Deprecated
+	@Override
+	public ClientConnectionManager getConnectionManager() {
+		return backend.getConnectionManager();
+	}
+}
@@ -0,0 +1,113 @@
+package com.x.http.resilience;
+
+/**
+ * 按目标地址生效的重试和熔断配置
+ *
+ * @author M
+ */
+public class ResiliencePolicy {
+
+	/**
+	 * 幂等请求失败后的最大重试次数，0为不重试
+	 */
+	private int maxRetries = 2;
+
+	/**
+	 * 第一次重试前的退避时间上限(毫秒)，之后每次翻倍，实际等待时间在0到上限之间随机
+	 */
+	private long initialBackoffMillis = 100;
+
+	/**
+	 * 退避时间上限(毫秒)
+	 */
+	private long maxBackoffMillis = 2000;
+
+	/**
+	 * 统计失败率的最近请求数
+	 */
+	private int windowSize = 50;
+
+	/**
+	 * 窗口内请求数达到该值后才计算失败率
+	 */
+	private int minimumCalls = 20;
+
+	/**
+	 * 失败率达到该值时熔断，0~1
+	 */
+	private double failureRateThreshold = 0.5;
+
+	/**
+	 * 熔断持续时间(毫秒)，之后进入半开状态放行试探请求
+	 */
+	private long openMillis = 10000;
+
+	/**
+	 * 半开状态放行的试探请求数，全部成功后关闭熔断
+	 */
+	private int halfOpenProbes = 3;
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public long getInitialBackoffMillis() {
+		return initialBackoffMillis;
+	}
+
+	public void setInitialBackoffMillis(long initialBackoffMillis) {
+		this.initialBackoffMillis = initialBackoffMillis;
+	}
+
+	public long getMaxBackoffMillis() {
+		return maxBackoffMillis;
+	}
+
+	public void setMaxBackoffMillis(long maxBackoffMillis) {
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public void setWindowSize(int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	public int getMinimumCalls() {
+		return minimumCalls;
+	}
+
+	public void setMinimumCalls(int minimumCalls) {
+		this.minimumCalls = minimumCalls;
+	}
+
+	public double getFailureRateThreshold() {
+		return failureRateThreshold;
+	}
+
+	public void setFailureRateThreshold(double failureRateThreshold) {
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	public long getOpenMillis() {
+		return openMillis;
+	}
+
+	public void setOpenMillis(long openMillis) {
+		this.openMillis = openMillis;
+	}
+
+	public int getHalfOpenProbes() {
+		return halfOpenProbes;
+	}
+
+	public void setHalfOpenProbes(int halfOpenProbes) {
+		this.halfOpenProbes = halfOpenProbes;
+	}
+}
@@ -0,0 +1,212 @@
+package com.x.http.resilience;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按目标地址重试和熔断的客户端
+ * <p>
+ * I/O异常和502、503、504响应记为失败：幂等请求(GET、HEAD、OPTIONS、PUT、DELETE、TRACE)按指数退避加随机抖动重试，
+ * 请求内容不可重复读取或请求已中止时不重试；失败率超过阈值后熔断，请求直接抛出{@link CircuitBreakerOpenException}
+ *
+ * @author M
+ */
+public class ResilientHttpClient extends CloseableHttpClient {
+	private static Logger log = LoggerFactory.getLogger(ResilientHttpClient.class);
+
+	/**
+	 * 请求上下文的属性，值为true时表示重试由外层负责，连接池客户端不再自动重试
+	 */
+	public static final String RETRY_HANDLED = "com.x.http.resilience.retry-handled";
+
+	private final CloseableHttpClient backend;
+
+	private final ResiliencePolicy policy;
+
+	private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private final List<CircuitBreakerListener> listeners = new CopyOnWriteArrayList<CircuitBreakerListener>();
+
+	public ResilientHttpClient(CloseableHttpClient backend, ResiliencePolicy policy) {
+		this.backend = backend;
+		this.policy = policy;
+	}
+
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+			throws IOException, ClientProtocolException {
+		if (context == null) {
+			context = new BasicHttpContext();
+		}
+		// 由本客户端退避重试，连接池客户端不再自动重试，见HttpClientFactory
+		Object previous = context.getAttribute(RETRY_HANDLED);
+		context.setAttribute(RETRY_HANDLED, Boolean.TRUE);
+		try {
+			return executeWithRetry(target, request, context);
+		} finally {
+			if (previous == null) {
+				context.removeAttribute(RETRY_HANDLED);
+			}
+		}
+	}
+
+	private CloseableHttpResponse executeWithRetry(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+		CircuitBreaker circuitBreaker = getCircuitBreaker(target);
+		boolean retryable = isRetryable(request);
+		for (int attempt = 0;; attempt++) {
+			if (!circuitBreaker.tryAcquire()) {
+				throw new CircuitBreakerOpenException("circuit breaker of " + circuitBreaker.getHost() + " is open");
+			}
+			boolean canRetry = retryable && attempt < policy.getMaxRetries() && !isAborted(request);
+			CloseableHttpResponse response;
+			try {
+				response = backend.execute(target, request, context);
+			} catch (IOException e) {
+				if (isAborted(request)) {
+					// 调用方主动中止(如对冲请求已返回)，不计入失败
+					circuitBreaker.onCancel();
+					throw e;
+				}
+				circuitBreaker.onFailure();
+				if (!canRetry) {
+					throw e;
+				}
+				log.warn("{} {} failed, retry {}: {}", request.getRequestLine().getMethod(), request.getRequestLine().getUri(), attempt + 1, e.toString());
+				backoff(attempt);
+				continue;
+			} catch (RateLimitExceededException e) {
+				// 本地限流，没有发出请求，不计入失败
+				circuitBreaker.onCancel();
+				throw e;
+			} catch (RuntimeException e) {
+				circuitBreaker.onFailure();
+				throw e;
+			}
+			int status = response.getStatusLine().getStatusCode();
+			if (status != 502 && status != 503 && status != 504) {
+				circuitBreaker.onSuccess();
+				return response;
+			}
+			circuitBreaker.onFailure();
+			if (!canRetry) {
+				return response;
+			}
+			response.close();
+			log.warn("{} {} returned {}, retry {}", request.getRequestLine().getMethod(), request.getRequestLine().getUri(), status, attempt + 1);
+			backoff(attempt);
+		}
+	}
+
+	/**
+	 * 等待0到min(最大退避, 初始退避 * 2^attempt)之间的随机时间
+	 */
+	private void backoff(int attempt) throws InterruptedIOException {
+		long cap = Math.min(policy.getMaxBackoffMillis(), policy.getInitialBackoffMillis() << Math.min(attempt, 30));
+		if (cap <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting to retry");
+		}
+	}
+
+	/**
+	 * @return 是否为幂等请求且请求内容可重复发送
+	 */
+	static boolean isRetryable(HttpRequest request) {
+		String method = request.getRequestLine().getMethod().toUpperCase(Locale.ROOT);
+		if (!"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method) && !"PUT".equals(method)
+				&& !"DELETE".equals(method) && !"TRACE".equals(method)) {
+			return false;
+		}
+		if (request instanceof HttpEntityEnclosingRequest) {
+			HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+			return enclosing.getEntity() == null || enclosing.getEntity().isRepeatable();
+		}
+		return true;
+	}
+
+	private static boolean isAborted(HttpRequest request) {
+		return request instanceof HttpUriRequest && ((HttpUriRequest) request).isAborted();
+	}
+
+	private CircuitBreaker getCircuitBreaker(HttpHost target) {
+		String host = target == null ? "" : target.toURI();
+		CircuitBreaker circuitBreaker = circuitBreakers.get(host);
+		if (circuitBreaker == null) {
+			CircuitBreaker created = new CircuitBreaker(host, policy, listeners);
+			circuitBreaker = circuitBreakers.putIfAbsent(host, created);
+			if (circuitBreaker == null) {
+				circuitBreaker = created;
+			}
+		}
+		return circuitBreaker;
+	}
+
+	/**
+	 * 监听各目标地址熔断器的状态变化
+	 *
+	 * @param listener
+	 */
+	public void addListener(CircuitBreakerListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(CircuitBreakerListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return 按目标地址排序的熔断器
+	 */
+	public Map<String, CircuitBreaker> getCircuitBreakers() {
+		return Collections.unmodifiableMap(new TreeMap<String, CircuitBreaker>(circuitBreakers));
+	}
+
+	public ResiliencePolicy getPolicy() {
+		return policy;
+	}
+
+	@Override
+	public void close() throws IOException {
+		backend.close();
+	}
+
+	@Deprecated
+	@Override
+	public HttpParams getParams() {
+		return backend.getParams();
+	}
+
+	@Deprecated
+	@Override
+	public ClientConnectionManager getConnectionManager() {
+		return backend.getConnectionManager();
+	}
+}
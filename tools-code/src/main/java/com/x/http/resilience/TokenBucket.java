@@ -0,0 +1,106 @@
+package com.x.http.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶：按固定速率产生令牌，最多积累burst个
+ * <p>
+ * 只记录下一个令牌可用的时间(纳秒)，获取令牌为一次比较并交换；需要等待时先预留令牌再休眠，等待的请求按到达顺序获得令牌
+ *
+ * @author M
+ */
+public class TokenBucket {
+
+	/**
+	 * 产生一个令牌的时间(纳秒)
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * 可以提前使用的时间(纳秒)，即burst - 1个令牌的时间
+	 */
+	private final long burstNanos;
+
+	/**
+	 * 不允许提前使用时，下一个令牌可用的时间
+	 */
+	private final AtomicLong nextNanos;
+
+	/**
+	 * @param permitsPerSecond 每秒产生的令牌数
+	 * @param burst            最多积累的令牌数，至少为1
+	 */
+	public TokenBucket(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0) {
+			throw new IllegalArgumentException("permitsPerSecond must be positive: " + permitsPerSecond);
+		}
+		this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.burstNanos = intervalNanos * (Math.max(1, burst) - 1);
+		this.nextNanos = new AtomicLong(System.nanoTime() - burstNanos);
+	}
+
+	/**
+	 * 有令牌时获取，不等待
+	 * 
+	 * @return 是否获取到令牌
+	 */
+	public boolean tryAcquire() {
+		long now = System.nanoTime();
+		long next;
+		long start;
+		do {
+			next = nextNanos.get();
+			start = next - now < 0 ? now : next;
+			if (start - now > burstNanos) {
+				return false;
+			}
+		} while (!nextNanos.compareAndSet(next, start + intervalNanos));
+		return true;
+	}
+
+	/**
+	 * 获取令牌，需要等待的时间超过timeout时直接返回
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * @return 是否获取到令牌
+	 * @throws InterruptedException 等待时被中断，预留的令牌不退回
+	 */
+	public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+		long timeoutNanos = unit.toNanos(timeout);
+		long now = System.nanoTime();
+		long next;
+		long start;
+		long wait;
+		do {
+			next = nextNanos.get();
+			start = next - now < 0 ? now : next;
+			wait = start - now - burstNanos;
+			if (wait > timeoutNanos) {
+				return false;
+			}
+		} while (!nextNanos.compareAndSet(next, start + intervalNanos));
+		if (wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+		return true;
+	}
+
+	/**
+	 * 暂停产生令牌，积累的令牌清空；如服务端返回429时按Retry-After等待
+	 * 
+	 * @param delay
+	 * @param unit
+	 */
+	public void pause(long delay, TimeUnit unit) {
+		long until = System.nanoTime() + unit.toNanos(delay) + burstNanos;
+		long next;
+		do {
+			next = nextNanos.get();
+			if (until - next <= 0) {
+				return;
+			}
+		} while (!nextNanos.compareAndSet(next, until));
+	}
+}
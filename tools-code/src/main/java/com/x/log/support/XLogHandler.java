@@ -5,7 +5,6 @@ import com.x.utils.DateTimeUtil;
 import com.x.utils.ThreadLocalUtils;
 import org.apache.commons.collections.map.HashedMap;
 
-import java.util.Date;
 import java.util.Map;
 
 /**
@@ -20,7 +19,7 @@ public class XLogHandler {
 		Map<String, Object> logInfo = ThreadLocalUtils.get(GlobalCode.REQUEST_INFO_THREAD_LOCAL_KEY, new HashedMap());
 		logInfo.put("msg", logMsg);
 		logInfo.put("level", level);
-		logInfo.put("time", DateTimeUtil.date2Str(new Date(), DateTimeUtil.MILLIONSECONDS_PARTTEN));
+		logInfo.put("time", DateTimeUtil.getCurMillionSecondsTime());
 		return logInfo;
 	}
 
@@ -29,7 +28,7 @@ public class XLogHandler {
 		logInfo.put("msg", logMsg);
 		logInfo.put("level", level);
 		logInfo.put("exception", e);
-		logInfo.put("time", DateTimeUtil.date2Str(new Date(), DateTimeUtil.MILLIONSECONDS_PARTTEN));
+		logInfo.put("time", DateTimeUtil.getCurMillionSecondsTime());
 		return logInfo;
 	}
 
@@ -1,5 +1,6 @@
 package com.x.utils;
 
+import com.x.utils.lang.TimeSource;
 import org.apache.commons.lang.time.DateFormatUtils;
 
 import java.text.ParseException;
@@ -17,13 +18,39 @@ public class DateTimeUtil {
 	public static final String MONTH_FIRST_DATE = "MONTH_FIRST_DATE";
 	public static final String MONTH_LAST_DATE = "MONTH_LAST_DATE";
 
+	/**
+	 * 获取当前时间使用的时间来源
+	 */
+	private static volatile TimeSource timeSource = TimeSource.SYSTEM;
+
+	/**
+	 * 设置时间来源，默认为系统时钟
+	 * 
+	 * @param timeSource 如CachedTimeSource.getInstance()
+	 */
+	public static void setTimeSource(TimeSource timeSource) {
+		if (timeSource == null) {
+			throw new IllegalArgumentException("time source can't be null");
+		}
+		DateTimeUtil.timeSource = timeSource;
+	}
+
+	/**
+	 * 从时间来源获取当前时间(毫秒)
+	 * 
+	 * @return
+	 */
+	public static long currentTimeMillis() {
+		return timeSource.currentTimeMillis();
+	}
+
 	/**
 	 * 获取系统当前日期 yyyy-MM-dd
 	 * 
 	 * @return
 	 */
 	public static String getToday() {
-		return DateFormatUtils.format(System.currentTimeMillis(), DATE_PARTTEN);
+		return DateFormatUtils.format(currentTimeMillis(), DATE_PARTTEN);
 	}
 
 	/**
@@ -32,7 +59,7 @@ public class DateTimeUtil {
 	 * @return
 	 */
 	public static String getCurTime() {
-		return DateFormatUtils.format(System.currentTimeMillis(), TIME_PARTTEN);
+		return DateFormatUtils.format(currentTimeMillis(), TIME_PARTTEN);
 	}
 
 	/**
@@ -41,7 +68,7 @@ public class DateTimeUtil {
 	 * @return
 	 */
 	public static String getCurDayTime() {
-		return DateFormatUtils.format(System.currentTimeMillis(), DAYTIME_PARTTEN);
+		return DateFormatUtils.format(currentTimeMillis(), DAYTIME_PARTTEN);
 	}
 
 	/**
@@ -50,7 +77,7 @@ public class DateTimeUtil {
 	 * @return
 	 */
 	public static String getCurMillionSecondsTime() {
-		return DateFormatUtils.format(System.currentTimeMillis(), MILLIONSECONDS_PARTTEN);
+		return DateFormatUtils.format(currentTimeMillis(), MILLIONSECONDS_PARTTEN);
 	}
 
 	/**
@@ -0,0 +1,92 @@
+package com.x.utils.lang;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 缓存的粗粒度时钟
+ * <p>
+ * 由一个守护线程按固定间隔刷新当前时间到volatile字段，读取时只是一次volatile读，
+ * 精度为刷新间隔，适合ID生成、日志时间等高频取时间的场景
+ */
+public class CachedTimeSource implements TimeSource {
+
+	private static volatile CachedTimeSource instance;
+
+	private final long tickMillis;
+
+	private final Thread ticker;
+
+	private volatile long now;
+
+	private volatile boolean running = true;
+
+	/**
+	 * 创建并启动刷新线程
+	 * @param tickMillis 刷新间隔(毫秒)
+	 */
+	public CachedTimeSource(long tickMillis) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("tick millis must be greater than 0: " + tickMillis);
+		}
+		this.tickMillis = tickMillis;
+		this.now = System.currentTimeMillis();
+		this.ticker = new Thread(new Runnable() {
+			public void run() {
+				tick();
+			}
+		}, "cached-time-source");
+		this.ticker.setDaemon(true);
+		this.ticker.start();
+	}
+
+	/**
+	 * 获取全局共享的毫秒级缓存时钟，首次调用时启动
+	 */
+	public static CachedTimeSource getInstance() {
+		CachedTimeSource result = instance;
+		if (result == null) {
+			synchronized (CachedTimeSource.class) {
+				result = instance;
+				if (result == null) {
+					instance = result = new CachedTimeSource(1L);
+				}
+			}
+		}
+		return result;
+	}
+
+	private void tick() {
+		long sleepNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		while (running) {
+			now = System.currentTimeMillis();
+			LockSupport.parkNanos(this, sleepNanos);
+		}
+	}
+
+	/**
+	 * @return 缓存的当前时间；关闭后改为读系统时钟，仍持有该实例的调用方不会读到停止的时间
+	 */
+	public long currentTimeMillis() {
+		return running ? now : System.currentTimeMillis();
+	}
+
+	/**
+	 * @return 刷新间隔(毫秒)
+	 */
+	@Override
+	public long getTickMillis() {
+		return tickMillis;
+	}
+
+	/**
+	 * 停止刷新线程，之后改为读系统时钟
+	 * @throws IllegalStateException 全局实例由多处共享，不能关闭
+	 */
+	public void close() {
+		if (this == instance) {
+			throw new IllegalStateException("the shared CachedTimeSource instance can not be closed");
+		}
+		running = false;
+	}
+}
@@ -0,0 +1,31 @@
+package com.x.utils.lang;
+
+/**
+ * 时间来源，返回以毫秒为单位的当前时间
+ * <p>
+ * 默认使用{@link #SYSTEM}；对时间精度要求不高、调用频繁的场景可以使用{@link CachedTimeSource}，
+ * 测试中可以替换为可控的实现
+ */
+public interface TimeSource {
+
+	/**
+	 * 系统时钟，每次调用System.currentTimeMillis()
+	 */
+	TimeSource SYSTEM = new TimeSource() {
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * @return 当前时间(毫秒)
+	 */
+	long currentTimeMillis();
+
+	/**
+	 * @return 刷新间隔(毫秒)，读到的时间最多落后真实时间约一个间隔；每次读取真实时间的实现返回0
+	 */
+	default long getTickMillis() {
+		return 0L;
+	}
+}
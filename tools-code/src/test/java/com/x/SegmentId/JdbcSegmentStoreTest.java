@@ -0,0 +1,73 @@
+package com.x.SegmentId;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 数据库号段存储测试，使用H2内存库
+ */
+public class JdbcSegmentStoreTest {
+
+    private static final int STEP = 100;
+
+    private JdbcSegmentStore store;
+
+    @Before
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:segment-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        store = new JdbcSegmentStore(dataSource);
+        store.createTable();
+    }
+
+    @Test
+    public void allocatesConsecutiveSegments() {
+        Assert.assertEquals(1, store.allocate("order", STEP));
+        Assert.assertEquals(1 + STEP, store.allocate("order", STEP));
+        Assert.assertEquals(1, store.allocate("user", STEP));
+    }
+
+    @Test
+    public void concurrentFirstAllocationsDoNotOverlap() throws Exception {
+        //多个线程同时为新业务键插入第一行，主键冲突的一方改为更新
+        final int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 20; round++) {
+                final String key = "order-" + round;
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<Long>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(new Callable<Long>() {
+                        public Long call() throws Exception {
+                            start.await();
+                            return store.allocate(key, STEP);
+                        }
+                    }));
+                }
+                start.countDown();
+
+                boolean[] allocated = new boolean[threads];
+                for (Future<Long> future : futures) {
+                    long segmentStart = future.get();
+                    Assert.assertEquals(1, segmentStart % STEP);
+                    int index = (int) (segmentStart / STEP);
+                    Assert.assertFalse("overlapping segment " + segmentStart, allocated[index]);
+                    allocated[index] = true;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.x.SegmentId;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * 内存映射文件号段存储测试：重新打开后从已持久化的最大ID继续，同一JVM内多个实例共享文件
+ */
+public class MappedFileSegmentStoreTest {
+
+    private static final int STEP = 100;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("segment-store");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void restartContinuesFromPersistedMax() {
+        MappedFileSegmentStore store = new MappedFileSegmentStore(directory);
+        SegmentIdGenerator generator = new SegmentIdGenerator(store, "order", STEP);
+        long last = 0;
+        for (int i = 0; i < 250; i++) {
+            last = generator.nextId();
+        }
+        Assert.assertEquals(250, last);
+        long segments = generator.getSegmentCount();
+        generator.close();
+        store.close();
+
+        //重启后丢弃未发放完的号段，从下一个未分配的号段开始
+        store = new MappedFileSegmentStore(directory);
+        generator = new SegmentIdGenerator(store, "order", STEP);
+        try {
+            Assert.assertEquals(1 + segments * STEP, generator.nextId());
+        } finally {
+            generator.close();
+            store.close();
+        }
+    }
+
+    @Test
+    public void storesOnSameFileInOneJvmDoNotOverlap() throws Exception {
+        final MappedFileSegmentStore[] stores = { new MappedFileSegmentStore(directory), new MappedFileSegmentStore(directory) };
+        final int threads = 8;
+        final int allocationsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final MappedFileSegmentStore store = stores[i % stores.length];
+                futures.add(executor.submit(new Callable<long[]>() {
+                    public long[] call() throws Exception {
+                        start.await();
+                        long[] starts = new long[allocationsPerThread];
+                        for (int j = 0; j < starts.length; j++) {
+                            starts[j] = store.allocate("order", STEP);
+                        }
+                        return starts;
+                    }
+                }));
+            }
+            start.countDown();
+
+            //号段首尾相接、互不重叠
+            boolean[] allocated = new boolean[threads * allocationsPerThread];
+            for (Future<long[]> future : futures) {
+                for (long segmentStart : future.get()) {
+                    Assert.assertEquals(1, segmentStart % STEP);
+                    int index = (int) (segmentStart / STEP);
+                    Assert.assertFalse("overlapping segment " + segmentStart, allocated[index]);
+                    allocated[index] = true;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            for (MappedFileSegmentStore store : stores) {
+                store.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.x.SegmentId;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 号段生成器测试：并发切换号段时ID连续递增，剩余10%时预取
+ */
+public class SegmentIdGeneratorTest {
+
+    private static final int STEP = 100;
+
+    @Test
+    public void idsAreDenseAndIncreasingAcrossSegmentsUnderContention() throws Exception {
+        final SegmentIdGenerator generator = new SegmentIdGenerator(new MemorySegmentStore(), "order", STEP);
+        final int threads = 8;
+        final int idsPerThread = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<long[]>() {
+                    public long[] call() throws Exception {
+                        start.await();
+                        long[] ids = new long[idsPerThread];
+                        for (int j = 0; j < ids.length; j++) {
+                            ids[j] = generator.nextId();
+                        }
+                        return ids;
+                    }
+                }));
+            }
+            start.countDown();
+
+            //每个ID恰好发放一次，合起来是从1开始的连续区间
+            boolean[] issued = new boolean[threads * idsPerThread + 1];
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get();
+                for (int i = 0; i < ids.length; i++) {
+                    if (i > 0) {
+                        Assert.assertTrue("ids must increase within a thread", ids[i] > ids[i - 1]);
+                    }
+                    Assert.assertTrue("id out of dense range " + ids[i], ids[i] >= 1 && ids[i] < issued.length);
+                    Assert.assertFalse("duplicated id " + ids[i], issued[(int) ids[i]]);
+                    issued[(int) ids[i]] = true;
+                }
+            }
+            Assert.assertTrue(generator.getSegmentCount() >= threads * idsPerThread / STEP);
+        } finally {
+            executor.shutdownNow();
+            generator.close();
+        }
+    }
+
+    @Test
+    public void prefetchStartsAtTenPercentRemaining() throws Exception {
+        MemorySegmentStore store = new MemorySegmentStore();
+        SegmentIdGenerator generator = new SegmentIdGenerator(store, "order", STEP);
+        try {
+            for (int i = 0; i < STEP - 10; i++) {
+                generator.nextId();
+            }
+            Assert.assertEquals(10, generator.getRemaining());
+            Thread.sleep(50);
+            Assert.assertEquals(1, store.allocations.get());
+
+            //发放剩余10%中的第一个ID时开始预取
+            generator.nextId();
+            for (int i = 0; i < 100 && store.allocations.get() < 2; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(2, store.allocations.get());
+
+            //预取完成后切换号段，请求线程不等待
+            Thread.sleep(50);
+            for (int i = 0; i < 9; i++) {
+                generator.nextId();
+            }
+            Assert.assertEquals(STEP + 1, generator.nextId());
+            Assert.assertEquals(0, generator.getWaitCount());
+            Assert.assertEquals(2, generator.getSegmentCount());
+        } finally {
+            generator.close();
+        }
+    }
+
+    /**
+     * 内存中的号段存储，记录分配次数
+     */
+    private static class MemorySegmentStore implements SegmentStore {
+
+        private final AtomicLong next = new AtomicLong(1);
+
+        private final AtomicLong allocations = new AtomicLong();
+
+        public long allocate(String key, int step) {
+            allocations.incrementAndGet();
+            return next.getAndAdd(step);
+        }
+    }
+}
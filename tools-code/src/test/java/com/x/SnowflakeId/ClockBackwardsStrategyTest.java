@@ -0,0 +1,211 @@
+package com.x.SnowflakeId;
+
+import com.x.utils.lang.TimeSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 时钟回退策略测试，使用可控的时间来源模拟回退
+ */
+public class ClockBackwardsStrategyTest {
+
+    private static final long EPOCH = 1491454090117L;
+
+    private static final long NOW = EPOCH + 1_000_000L;
+
+    @Test
+    public void failRefusesWhenClockMovesBackwards() {
+        StubTimeSource time = new StubTimeSource(NOW);
+        SnowflakeGenerator generator = generator(ClockBackwardsStrategy.FAIL, 5, time);
+        generator.nextId();
+
+        time.set(NOW - 1);
+        try {
+            generator.nextId();
+            Assert.fail("clock moved backwards, nextId should fail");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Clock moved backwards"));
+        }
+        Assert.assertEquals(1, generator.getClockBackwardsCount());
+        Assert.assertEquals(1, generator.getClockBackwardsRefusedCount());
+    }
+
+    @Test
+    public void waitWithinLimitBlocksUntilClockCatchesUp() {
+        StubTimeSource time = new StubTimeSource(NOW);
+        SnowflakeGenerator generator = generator(ClockBackwardsStrategy.WAIT, 5, time);
+        long last = generator.nextId();
+
+        //回退3毫秒，之后每次读时钟前进1毫秒
+        time.set(NOW - 3);
+        time.step(1);
+        long id = generator.nextId();
+
+        Assert.assertTrue(id > last);
+        Assert.assertTrue(generator.parse(id).getTimestamp() >= NOW);
+        Assert.assertEquals(1, generator.getClockBackwardsWaitCount());
+        Assert.assertEquals(0, generator.getClockBackwardsRefusedCount());
+    }
+
+    @Test
+    public void waitBeyondLimitRefuses() {
+        StubTimeSource time = new StubTimeSource(NOW);
+        SnowflakeGenerator generator = generator(ClockBackwardsStrategy.WAIT, 5, time);
+        generator.nextId();
+
+        time.set(NOW - 6);
+        try {
+            generator.nextId();
+            Assert.fail("clock moved backwards beyond the limit, nextId should fail");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Clock moved backwards"));
+        }
+        Assert.assertEquals(0, generator.getClockBackwardsWaitCount());
+        Assert.assertEquals(1, generator.getClockBackwardsRefusedCount());
+    }
+
+    @Test
+    public void cachedClockLagWithinTickIsNotBackwards() {
+        StubTimeSource system = new StubTimeSource(NOW);
+        SnowflakeGenerator generator = generator(ClockBackwardsStrategy.FAIL, 5, system);
+        long last = generator.nextId();
+
+        //切换到落后1毫秒、刷新间隔1毫秒的缓存时钟，共享原来的生成状态
+        StubTimeSource cached = new StubTimeSource(NOW - 1);
+        cached.tickMillis = 1;
+        SnowflakeGenerator switched = generator.toBuilder().timeSource(cached).build(generator);
+        long id = switched.nextId();
+
+        Assert.assertTrue(id > last);
+        Assert.assertEquals(NOW, switched.parse(id).getTimestamp());
+        Assert.assertEquals(0, switched.getClockBackwardsCount());
+
+        //超过刷新间隔的落后仍按回退处理
+        cached.set(NOW - 3);
+        try {
+            switched.nextId();
+            Assert.fail("clock moved backwards, nextId should fail");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Clock moved backwards"));
+        }
+    }
+
+    @Test
+    public void waitLimitRoundsUpToTick() {
+        StubTimeSource time = new StubTimeSource(NOW);
+        SnowflakeGenerator generator = SnowflakeGenerator.builder()
+                .epoch(EPOCH)
+                .tickMillis(10)
+                .clockBackwards(ClockBackwardsStrategy.WAIT, 5)
+                .timeSource(time)
+                .build();
+        long last = generator.nextId();
+
+        //回退不足一个时间单位的上限时仍然等待，而不是按0容忍拒绝
+        time.set(NOW - 10);
+        time.step(1);
+        Assert.assertTrue(generator.nextId() > last);
+        Assert.assertEquals(1, generator.getClockBackwardsWaitCount());
+
+        //重建配置不丢失精度
+        Assert.assertEquals(5, generator.toBuilder().build().getMaxBackwardsMillis());
+    }
+
+    @Test
+    public void logicalKeepsLastTimestampAndBorrowsNextTick() {
+        StubTimeSource time = new StubTimeSource(NOW);
+        SnowflakeGenerator generator = generator(ClockBackwardsStrategy.LOGICAL, 5, time);
+        long last = generator.nextId();
+
+        //回退后生成超过一个时间单位序列数的ID，必须借用之后的时间截
+        time.set(NOW - 100);
+        long[] ids = new long[5000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = generator.nextId();
+            Assert.assertTrue(ids[i] > last);
+            last = ids[i];
+        }
+
+        Assert.assertEquals(NOW, generator.parse(ids[0]).getTimestamp());
+        Assert.assertEquals(NOW + 1, generator.parse(ids[ids.length - 1]).getTimestamp());
+        Assert.assertEquals(ids.length, generator.getClockBackwardsLogicalCount());
+        Assert.assertEquals(0, generator.getClockBackwardsRefusedCount());
+    }
+
+    @Test
+    public void spareWorkerSwitchesBackAfterClockCatchesUp() {
+        StubTimeSource time = new StubTimeSource(NOW);
+        SnowflakeGenerator generator = generator(ClockBackwardsStrategy.SPARE_WORKER, 5, time);
+        long primary = generator.nextId();
+
+        time.set(NOW - 100);
+        long spare = generator.nextId();
+        SnowflakeIdInfo spareInfo = generator.parse(spare);
+        Assert.assertEquals(3 | 16, spareInfo.getWorkerId());
+        Assert.assertEquals(NOW - 100, spareInfo.getTimestamp());
+        Assert.assertNotEquals(primary, spare);
+        Assert.assertEquals(1, generator.getSpareWorkerSwitchCount());
+
+        //时钟超过主机器ID用过的时间后切回
+        time.set(NOW + 1);
+        long back = generator.nextId();
+        Assert.assertEquals(3, generator.parse(back).getWorkerId());
+        Assert.assertTrue(back > primary);
+
+        //备用机器ID用过的时间未过去，再次回退时不能切换，只能拒绝
+        time.set(NOW - 200);
+        try {
+            generator.nextId();
+            Assert.fail("spare worker id was used at this time, nextId should fail");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Clock moved backwards"));
+        }
+        Assert.assertEquals(1, generator.getSpareWorkerSwitchCount());
+        Assert.assertEquals(1, generator.getClockBackwardsRefusedCount());
+    }
+
+    private static SnowflakeGenerator generator(ClockBackwardsStrategy strategy, long maxBackwardsMillis, TimeSource timeSource) {
+        return SnowflakeGenerator.builder()
+                .epoch(EPOCH)
+                .workerId(3)
+                .datacenterId(1)
+                .clockBackwards(strategy, maxBackwardsMillis)
+                .timeSource(timeSource)
+                .build();
+    }
+
+    /**
+     * 可控的时间来源，每次读取后前进step毫秒
+     */
+    private static class StubTimeSource implements TimeSource {
+
+        private long now;
+
+        private long step;
+
+        private long tickMillis;
+
+        StubTimeSource(long now) {
+            this.now = now;
+        }
+
+        synchronized void set(long now) {
+            this.now = now;
+        }
+
+        synchronized void step(long step) {
+            this.step = step;
+        }
+
+        public synchronized long currentTimeMillis() {
+            long result = now;
+            now += step;
+            return result;
+        }
+
+        @Override
+        public long getTickMillis() {
+            return tickMillis;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.x.SnowflakeId;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SnowflakeIdWorker并发生成测试：1~64个线程同时调用nextId，
+ * 所有ID不重复且每个线程内严格递增，各线程数下的吞吐量记录到日志
+ */
+public class SnowflakeIdWorkerTest {
+    private static Logger log = LoggerFactory.getLogger(SnowflakeIdWorkerTest.class);
+
+    /** 每个线程生成的ID数 */
+    private static final int IDS_PER_THREAD = 20_000;
+
+    @Test
+    public void nextIdIsUniqueAndIncreasingUnderContention() throws Exception {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            long start = System.nanoTime();
+            List<long[]> results = generate(threads);
+            long elapsedNanos = System.nanoTime() - start;
+
+            Set<Long> ids = new HashSet<>(threads * IDS_PER_THREAD * 2);
+            for (long[] result : results) {
+                for (int i = 0; i < result.length; i++) {
+                    if (i > 0) {
+                        Assert.assertTrue("ids must increase within a thread", result[i] > result[i - 1]);
+                    }
+                    Assert.assertTrue("duplicated id " + result[i], ids.add(result[i]));
+                }
+            }
+            Assert.assertEquals(threads * IDS_PER_THREAD, ids.size());
+            log.info("threads={}, ids={}, throughput={} ids/ms", threads, ids.size(), Math.round(ids.size() / (elapsedNanos / 1e6)));
+        }
+    }
+
+    private static List<long[]> generate(int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<long[]>() {
+                    public long[] call() throws Exception {
+                        start.await();
+                        long[] ids = new long[IDS_PER_THREAD];
+                        for (int j = 0; j < ids.length; j++) {
+                            ids[j] = Long.parseLong(SnowflakeIdWorker.nextId());
+                        }
+                        return ids;
+                    }
+                }));
+            }
+            start.countDown();
+            List<long[]> results = new ArrayList<>();
+            for (Future<long[]> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.x.SnowflakeId;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * 机器ID租约失效后SnowflakeIdWorker拒绝生成ID
+ */
+public class WorkerIdLeaseTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("worker-id-lease");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SnowflakeIdWorker.config(0, 0);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void takenOverLeaseIsLost() throws Exception {
+        WorkerIdLease lease = WorkerIdLease.acquire(directory, 31, 20, 100);
+        try {
+            //模拟其他进程接管了该机器ID
+            Path lockFile = directory.resolve("worker-" + lease.getWorkerId() + ".lock");
+            Files.write(lockFile, ("other|" + System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 100 && !lease.isLost(); i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(lease.isLost());
+            Assert.assertFalse(lease.isValid());
+        } finally {
+            lease.close();
+        }
+    }
+
+    @Test
+    public void staleLeaseIsInvalidBeforeHeartbeatRuns() throws Exception {
+        //心跳间隔远大于超时余量，模拟进程停顿时心跳线程来不及标记丢失
+        WorkerIdLease lease = WorkerIdLease.acquire(directory, 31, 1000, 1100);
+        try {
+            Assert.assertTrue(lease.isValid());
+            Thread.sleep(150);
+            Assert.assertFalse(lease.isLost());
+            Assert.assertFalse(lease.isValid());
+        } finally {
+            lease.close();
+        }
+    }
+
+    @Test
+    public void reconfigClosesPreviousLease() {
+        WorkerIdLease first = SnowflakeIdWorker.config(directory, 1);
+        WorkerIdLease second = SnowflakeIdWorker.config(directory, 1);
+        Assert.assertTrue(first.isClosed());
+        Assert.assertTrue(second.isValid());
+        //释放的机器ID可以再次租用
+        Assert.assertEquals(first.getWorkerId(), SnowflakeIdWorker.config(directory, 1).getWorkerId());
+        Assert.assertTrue(second.isClosed());
+
+        SnowflakeIdWorker.config(2, 1);
+    }
+
+    @Test
+    public void nextIdFailsAfterLeaseIsClosed() {
+        WorkerIdLease lease = SnowflakeIdWorker.config(directory, 1);
+        SnowflakeIdWorker.nextLongId();
+        lease.close();
+        try {
+            SnowflakeIdWorker.nextLongId();
+            Assert.fail("lease is closed, nextLongId should fail");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("closed"));
+        }
+        try {
+            SnowflakeIdWorker.nextIds(10);
+            Assert.fail("lease is closed, nextIds should fail");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("closed"));
+        }
+
+        //手工配置机器ID后恢复生成
+        SnowflakeIdWorker.config(2, 1);
+        Assert.assertEquals(2, SnowflakeIdWorker.parse(SnowflakeIdWorker.nextLongId()).getWorkerId());
+    }
+}